@@ -0,0 +1,275 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright © ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.util.*;
+import java.util.concurrent.*;
+import javax.persistence.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * JMH benchmarks of the test actions (a cross check of Runner's results).
+ *
+ * The database is filled once per trial (as in Runner's persist action),
+ * and every JMH thread uses its own EntityManager. Results are calls per
+ * second - every call is an action on a batch of objects (multiply by the
+ * batch size for objects per second, as reported by Runner). Loaded
+ * entity objects and query results are consumed by a Blackhole.
+ *
+ * The "mixed" group runs retrieve and update threads concurrently.
+ * JMH options and profilers apply, e.g.: -p testCode=test1b -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ActionBenchmark {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Maximum objects per transaction while filling the database */
+	private static final int FILL_BATCH_SIZE = 20000;
+
+	//------------//
+	// Parameters //
+	//------------//
+
+	/**
+	 * Test code in benchmark.properties (class and test properties).
+	 * Tests with no queries (e.g. test5a - NodeTest) are not in the defaults
+	 * (run them without the query benchmark: -p testCode=test5a -e query).
+	 */
+	@Param({ "test1a", "test2a", "test3a", "test4a" })
+	public String testCode;
+
+	/** Persistence unit name in META-INF/persistence.xml */
+	@Param({ "memory-memory-embedded" })
+	public String persistenceUnitName;
+
+	/** Batch size (0 - the first batch-size value of the test) */
+	@Param({ "0" })
+	public int batchSize;
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The test */
+	Test test;
+
+	/** The database connection factory */
+	EntityManagerFactory emf;
+
+	/** Number of objects in the database after the setup */
+	private int objectCount;
+
+	//----------------//
+	// Setup/Teardown //
+	//----------------//
+
+	/**
+	 * Constructs the test and fills the database.
+	 *
+	 * @param params the benchmark parameters (for the thread count)
+	 */
+	@Setup(Level.Trial)
+	public void setUp(BenchmarkParams params) {
+		test = Test.newInstance(testCode);
+		test.setThreadCount(params.getThreads());
+		test.setBatchSize((batchSize > 0) ? batchSize :
+			ConfigHelper.getIntListProperty(testCode + "-batch-size")[0]);
+		emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+		objectCount = ConfigHelper.getTestIntProperty(testCode, "total-objects");
+		EntityManager em = emf.createEntityManager();
+		try {
+			test.buildInventory(objectCount);
+			while (test.getInventorySize() > 0) {
+				test.persist(em, FILL_BATCH_SIZE);
+			}
+			test.setEntityCount(objectCount);
+			test.loadIdRange(em);
+		}
+		finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * Closes the database connection factory.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		emf.close();
+	}
+
+	//--------------//
+	// Thread State //
+	//--------------//
+
+	/**
+	 * Private connection (per thread) to the test database.
+	 */
+	@State(Scope.Thread)
+	public static class Session {
+
+		/** The connection */
+		EntityManager em;
+
+		@Setup(Level.Trial)
+		public void open(ActionBenchmark benchmark) {
+			em = benchmark.emf.createEntityManager();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			em.close();
+		}
+	}
+
+	/**
+	 * Private inventory (per thread) of new entity objects for persist.
+	 *
+	 * A batch is built before every call (a persist call is a transaction,
+	 * so the per invocation setup is negligible), and the objects that are
+	 * persisted in an iteration are removed after it (outside the
+	 * measurement), so the database size is stable.
+	 */
+	@State(Scope.Thread)
+	public static class Inventory {
+
+		/** New entity objects for the next persist call */
+		final Stack<TestEntity> entities = new Stack<TestEntity>();
+
+		/** The batch of the last persist call */
+		private final List<TestEntity> batch = new ArrayList<TestEntity>();
+
+		/** Primary keys of the objects persisted in the current iteration */
+		private final List<Object> persistedIds = new ArrayList<Object>();
+
+		@Setup(Level.Invocation)
+		public void fill(ActionBenchmark benchmark) {
+			collectPersisted(benchmark);
+			entities.clear();
+			benchmark.test.buildInventory(
+				entities, benchmark.test.getBatchSize());
+			batch.addAll(entities);
+		}
+
+		@TearDown(Level.Iteration)
+		public void removePersisted(ActionBenchmark benchmark, Session session) {
+			collectPersisted(benchmark);
+			EntityManager em = session.em;
+			Class<?> entityClass = benchmark.test.getEntityClass();
+			for (int i = 0; i < persistedIds.size(); i += FILL_BATCH_SIZE) {
+				em.getTransaction().begin();
+				for (Object id : persistedIds.subList(
+						i, Math.min(i + FILL_BATCH_SIZE, persistedIds.size()))) {
+					Object entity = em.find(entityClass, id);
+					if (entity != null) {
+						em.remove(entity);
+					}
+				}
+				em.getTransaction().commit();
+				em.clear();
+			}
+			persistedIds.clear();
+		}
+
+		/**
+		 * Moves the primary keys of the last batch to persistedIds.
+		 */
+		private void collectPersisted(ActionBenchmark benchmark) {
+			PersistenceUnitUtil util = benchmark.emf.getPersistenceUnitUtil();
+			for (TestEntity entity : batch) {
+				Object id = util.getIdentifier(entity);
+				if (id != null) { // null - not persisted (a failed batch)
+					persistedIds.add(id);
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	//------------//
+	// Benchmarks //
+	//------------//
+
+	/**
+	 * Persists a batch of entity objects (from the thread inventory).
+	 */
+	@Benchmark
+	public void persist(Inventory inventory, Session session) {
+		test.persist(session.em, test.getBatchSize(), inventory.entities);
+	}
+
+	/**
+	 * Retrieves a batch of random entity objects.
+	 */
+	@Benchmark
+	public void retrieve(Session session, Blackhole blackhole) {
+		blackhole.consume(test.doAction(session.em, Test.ActionType.RETRIEVE));
+	}
+
+	/**
+	 * Updates a batch of random entity objects.
+	 */
+	@Benchmark
+	public void update(Session session, Blackhole blackhole) {
+		blackhole.consume(test.doAction(session.em, Test.ActionType.UPDATE));
+	}
+
+	/**
+	 * Executes the test query (fails for tests with no queries).
+	 */
+	@Benchmark
+	public void query(Session session, Blackhole blackhole) {
+		if (!test.hasQueries()) {
+			throw new IllegalStateException(test.getName() + " has no queries");
+		}
+		blackhole.consume(test.query(session.em));
+	}
+
+	/**
+	 * Retrieves random entity objects concurrently with updates.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public void mixedRetrieve(Session session, Blackhole blackhole) {
+		retrieve(session, blackhole);
+	}
+
+	/**
+	 * Updates random entity objects concurrently with retrievals.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void mixedUpdate(Session session, Blackhole blackhole) {
+		update(session, blackhole);
+	}
+}
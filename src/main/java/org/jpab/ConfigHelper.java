@@ -35,6 +35,15 @@ abstract class ConfigHelper {
 	/** Name of benchmark properties files */
 	private static final String PROPERTIES_FILE_NAME = "benchmark.properties";
 
+	/**
+	 * Test properties that are added to the test name when specified
+	 * (e.g. "ExtTest-JOINED"), so that every variant has its own results
+	 */
+	private static final String[] VARIANT_PROPERTIES = {
+		"inheritance", "isolation", "id-strategy", "allocation-size",
+		"flush-interval", "lob-size", "query-api", "pool"
+	};
+
 	/** Global benchmark properties (from the root directory) */
 	private static final Properties globalProperties =
 		loadProperties(FileHelper.ROOT_DIR);
@@ -88,6 +97,24 @@ abstract class ConfigHelper {
 		return testCodeSet.toArray(new String[0]);
 	}
 
+	/**
+	 * Gets the name of a test as reported in the results.
+	 *
+	 * @param testCode the test code
+	 * @return the short test class name with the variant values (if any).
+	 */
+	static String getTestName(String testCode) {
+		StringBuilder sb = new StringBuilder(FormatHelper.getShortClassName(
+			getProperty(testCode + "-class")));
+		for (String name : VARIANT_PROPERTIES) {
+			String value = getProperty(testCode + '-' + name);
+			if (value != null) {
+				sb.append('-').append(value.trim());
+			}
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Gets a value of a global benchmark property.
 	 *  
@@ -116,6 +143,113 @@ abstract class ConfigHelper {
 		}
 	}
 
+	/**
+	 * Gets a value of an optional global benchmark int property.
+	 *
+	 * @param name the property name
+	 * @param defaultValue the value to return if the property is missing
+	 * @return the property value.
+	 */
+	static int getIntProperty(String name, int defaultValue) {
+		return (getProperty(name) != null) ?
+			getIntProperty(name) : defaultValue;
+	}
+
+	/**
+	 * Gets a value of a benchmark int property that a test may override
+	 * (e.g. "test1a-total-objects" overrides "total-objects").
+	 *
+	 * @param testCode the test code
+	 * @param name the global property name
+	 * @return the test specific value (or the global value if missing).
+	 */
+	static int getTestIntProperty(String testCode, String name) {
+		return getIntProperty(testCode + '-' + name, getIntProperty(name));
+	}
+
+	/**
+	 * Gets a value of a global benchmark int list property.
+	 *
+	 * The value is a comma separated list of items. Every item is either
+	 * a single number (e.g. "5") or a range: "1..8" (step 1), "10..50+10"
+	 * (arithmetic, step 10) or "1..64*2" (geometric, factor 2).
+	 *
+	 * @param name the property name
+	 * @return the property values in ascending order (or null if missing).
+	 */
+	static int[] getIntListProperty(String name) {
+		String value = getProperty(name);
+		if (value == null) {
+			return null;
+		}
+		TreeSet<Integer> valueSet = new TreeSet<Integer>();
+		try {
+			for (String item : value.split(",")) {
+				addIntListItem(item.trim(), valueSet);
+			}
+		}
+		catch (RuntimeException e) {
+			System.err.println("Invalid value " + value +
+				" for benchmark property " + name);
+			throw e;
+		}
+		int[] result = new int[valueSet.size()];
+		int ix = 0;
+		for (Integer i : valueSet) {
+			result[ix++] = i.intValue();
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the values of a single int list item (number or range) to a set.
+	 *
+	 * @param item a number or a range (see getIntListProperty)
+	 * @param valueSet a set to be filled with the item values
+	 */
+	private static void addIntListItem(String item, Set<Integer> valueSet) {
+		int rangePos = item.indexOf("..");
+		if (rangePos < 0) {
+			valueSet.add(Integer.valueOf(item));
+			return;
+		}
+		int from = Integer.parseInt(item.substring(0, rangePos).trim());
+		String rest = item.substring(rangePos + 2);
+		int step = 1;
+		boolean isGeometric = false;
+		int stepPos = rest.indexOf('*');
+		if (stepPos >= 0) {
+			isGeometric = true;
+		}
+		else {
+			stepPos = rest.indexOf('+');
+		}
+		int to;
+		if (stepPos >= 0) {
+			to = Integer.parseInt(rest.substring(0, stepPos).trim());
+			step = Integer.parseInt(rest.substring(stepPos + 1).trim());
+		}
+		else {
+			to = Integer.parseInt(rest.trim());
+		}
+		if (from < 1 && isGeometric || step < (isGeometric ? 2 : 1)) {
+			throw new IllegalArgumentException("Invalid range: " + item);
+		}
+		for (long i = from; i <= to; i = isGeometric ? i * step : i + step) {
+			valueSet.add(Integer.valueOf((int)i));
+		}
+	}
+
+	/**
+	 * Overrides a value of a global benchmark property (in this process).
+	 *
+	 * @param name the property name
+	 * @param value the new property value
+	 */
+	static void setProperty(String name, String value) {
+		globalProperties.setProperty(name, value);
+	}
+
 	//------------------//
 	// Local Properties //
 	//------------------//
@@ -0,0 +1,185 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * JDBC driver wrapper that counts the SQL statements that are executed
+ * by the JPA provider (e.g. for detecting N+1 selects).
+ *
+ * The wrapping URL is "jdbc:jpab:[driver-class:]real-url".
+ */
+public final class CountingDriver implements Driver {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Prefix of the URLs that are handled by this driver */
+	private static final String URL_PREFIX = "jdbc:jpab:";
+
+	//-------------//
+	// Static Data //
+	//-------------//
+
+	/** Total number of executed statements (in all the connections) */
+	private static final AtomicLong statementCount = new AtomicLong();
+
+	/** Indicates if any connection has been opened by this driver */
+	private static volatile boolean isInUse;
+
+	static {
+		try {
+			DriverManager.registerDriver(new CountingDriver());
+		}
+		catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	//----------------//
+	// Static Methods //
+	//----------------//
+
+	/**
+	 * Builds a URL for connecting through this driver.
+	 *
+	 * @param url the real JDBC URL
+	 * @param driver the real JDBC driver class name (or null)
+	 * @return the wrapping URL.
+	 */
+	static String wrapUrl(String url, String driver) {
+		return (driver != null) ?
+			URL_PREFIX + driver + ':' + url : URL_PREFIX + url;
+	}
+
+	/**
+	 * Gets the total number of executed statements.
+	 *
+	 * @return the number of statements executed so far.
+	 */
+	static long getStatementCount() {
+		return statementCount.get();
+	}
+
+	/**
+	 * Checks if statements are counted in this process.
+	 *
+	 * @return true - if a connection has been opened by this driver.
+	 */
+	static boolean isInUse() {
+		return isInUse;
+	}
+
+	//------------------//
+	// Driver Interface //
+	//------------------//
+
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+
+		// Extract and load the real driver (if specified):
+		String realUrl = url.substring(URL_PREFIX.length());
+		if (!realUrl.startsWith("jdbc:")) {
+			int driverEndPos = realUrl.indexOf(":jdbc:");
+			String driver = realUrl.substring(0, driverEndPos);
+			realUrl = realUrl.substring(driverEndPos + 1);
+			try {
+				Class.forName(driver);
+			}
+			catch (ClassNotFoundException e) {
+				throw new SQLException("JDBC driver " + driver + " is not found");
+			}
+		}
+
+		// Connect and wrap the connection:
+		isInUse = true;
+		return (Connection)wrap(
+			DriverManager.getConnection(realUrl, info), Connection.class);
+	}
+
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	public java.util.logging.Logger getParentLogger()
+			throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	//------------------//
+	// Counting Proxies //
+	//------------------//
+
+	/**
+	 * Wraps a JDBC connection or statement with a counting proxy.
+	 *
+	 * @param target the real connection or statement
+	 * @param type the interface to expose (e.g. PreparedStatement)
+	 * @return the proxy.
+	 */
+	private static Object wrap(final Object target, Class<?> type) {
+		return Proxy.newProxyInstance(CountingDriver.class.getClassLoader(),
+			new Class[] { type }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method,
+						Object[] args) throws Throwable {
+					String name = method.getName();
+					if (name.startsWith("execute")) {
+						statementCount.incrementAndGet(); // batch - as one
+					}
+					Object result;
+					try {
+						result = method.invoke(target, args);
+					}
+					catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+					if (result instanceof Statement &&
+							method.getReturnType().isInterface()) {
+						result = wrap(result, method.getReturnType());
+					}
+					return result;
+				}
+			});
+	}
+}
@@ -62,6 +62,10 @@ public abstract class FileHelper {
 	static final File PU_XML_FILE =
 		new File(new File(TEMP_DIR, "META-INF"), "persistence.xml");
 
+	/** Dynamically generated mapping file (e.g. for inheritance strategy) */
+	static final File ORM_XML_FILE =
+		new File(new File(TEMP_DIR, "META-INF"), "jpab-orm.xml");
+
 	/** Output result file (filled in addition to stdout results) */
 	static final File RESULT_FILE = new File(ROOT_DIR, "results.txt");
 
@@ -36,14 +36,51 @@ public final class Main {
 	private static final boolean REPEAT = true;
 
 	/**
-	 * All the entity classes in the benchmark tests
+	 * All the entity (and embeddable) classes in the benchmark tests
 	 * (for generating persistence.xml files dynamically)
 	 */
 	private static Class[] ENTITY_CLASSES = {
 		org.jpab.basic.Person.class,
 		org.jpab.col.CollectionPerson.class,
 		org.jpab.index.IndexedPerson.class,
-		org.jpab.node.Node.class
+		org.jpab.node.Node.class,
+		org.jpab.cache.CachedPerson.class,
+		org.jpab.cache.CachedNode.class,
+		org.jpab.lazy.LazyCollectionPerson.class,
+		org.jpab.lazy.LazyNode.class,
+		org.jpab.graph.GraphNode.class,
+		org.jpab.lock.VersionedPerson.class,
+		org.jpab.lob.Document.class,
+		org.jpab.lob.WideRow.class,
+		org.jpab.rel.RelPerson.class,
+		org.jpab.rel.PersonGroup.class,
+		org.jpab.rel.Address.class,
+		org.jpab.rel.Contact.class
+	};
+
+	/**
+	 * Entity classes that are not supported by all providers / DBMS
+	 * (inheritance, sequences, identity columns), which are listed only
+	 * for a test whose main entity class is the same class or a superclass
+	 */
+	private static Class[] OPTIONAL_ENTITY_CLASSES = {
+		org.jpab.ext.PersonBase.class,
+		org.jpab.ext.PersonExt.class,
+		org.jpab.ext.PersonExtExt.class,
+		org.jpab.id.TablePerson.class,
+		org.jpab.id.SequencePerson.class,
+		org.jpab.id.IdentityPerson.class,
+		org.jpab.id.UuidPerson.class,
+		org.jpab.id.OrderedUuidPerson.class,
+		org.jpab.id.ClientIdPerson.class
+	};
+
+	/**
+	 * Test properties that may specify a list / range of values
+	 * (every value is run separately - see ConfigHelper.getIntListProperty)
+	 */
+	private static final String[] SWEEP_PROPERTIES = {
+		"threads", "batch-size"
 	};
 
 	//--------------//
@@ -195,16 +232,18 @@ public final class Main {
 	 *
 	 * @param puName the persistence unit name
 	 * @param testCode the test code
+	 * @param overrides test property values of a single sweep run
 	 * @return true - if result exists; false - if not.
 	 */
-	private boolean hasResult(String puName, String testCode) {
+	private boolean hasResult(String puName, String testCode,
+			Map<String, String> overrides) {
 		StringBuilder sb = new StringBuilder(64);
 		sb.append(puName);
-		sb.append('-').append(FormatHelper.getShortClassName(
-			ConfigHelper.getProperty(testCode + "-class")));
-		sb.append('-').append(ConfigHelper.getProperty(testCode + "-threads"));
-		sb.append('-').append(ConfigHelper.getProperty(testCode + "-batch-size"));
-		sb.append('-').append(ConfigHelper.getProperty("total-objects"));
+		sb.append('-').append(ConfigHelper.getTestName(testCode));
+		sb.append('-').append(overrides.get("threads"));
+		sb.append('-').append(overrides.get("batch-size"));
+		sb.append('-').append(
+			ConfigHelper.getTestIntProperty(testCode, "total-objects"));
 		String signature = sb.toString();
 		return OldResults.contains(signature);
 	}
@@ -327,25 +366,122 @@ public final class Main {
 
 
 		for (String testCode : ConfigHelper.getTestCodes()) {
-			if (REPEAT || !hasResult(persistenceUnitName, testCode)) {
-				// Generate a dynamic persistence unit:
-				dbFileName = "jpab" + Randomizer.randomNumString(10, 10);
-				FileHelper.writeTextFile(
-					buildPersistenceXml(), FileHelper.PU_XML_FILE);
-
-				// Run the benchmark in a new process:
-				runTest(testCode, jarFilePaths);
+			for (Map<String, String> overrides : expandSweep(testCode)) {
+				if (REPEAT ||
+						!hasResult(persistenceUnitName, testCode, overrides)) {
+					// Generate a dynamic persistence unit:
+					dbFileName = "jpab" + Randomizer.randomNumString(10, 10);
+					FileHelper.writeTextFile(
+						buildPersistenceXml(testCode), FileHelper.PU_XML_FILE);
+					String ormXml = buildOrmXml(testCode);
+					if (ormXml != null) {
+						FileHelper.writeTextFile(ormXml, FileHelper.ORM_XML_FILE);
+					}
+
+					// Run the benchmark in a new process:
+					runTest(testCode, overrides, jarFilePaths);
+				}
+			}
+			reportSweeps(testCode);
+		}
+	}
+
+	/**
+	 * Expands the sweep properties of a test into separate runs.
+	 *
+	 * @param testCode the test code
+	 * @return test property values per run (all the combinations).
+	 */
+	private static List<Map<String, String>> expandSweep(String testCode) {
+		List<Map<String, String>> runList =
+			new ArrayList<Map<String, String>>();
+		runList.add(new LinkedHashMap<String, String>());
+		for (String name : SWEEP_PROPERTIES) {
+			int[] values = ConfigHelper.getIntListProperty(testCode + "-" + name);
+			if (values == null) {
+				continue;
+			}
+			List<Map<String, String>> expandedRunList =
+				new ArrayList<Map<String, String>>();
+			for (Map<String, String> run : runList) {
+				for (int value : values) {
+					Map<String, String> expandedRun =
+						new LinkedHashMap<String, String>(run);
+					expandedRun.put(name, String.valueOf(value));
+					expandedRunList.add(expandedRun);
+				}
+			}
+			runList = expandedRunList;
+		}
+		return runList;
+	}
+
+	/**
+	 * Prints the result curves of thread and batch size sweeps.
+	 *
+	 * @param testCode the test code
+	 */
+	private void reportSweeps(String testCode) {
+		// Prepare the run details:
+		int[] threadCounts =
+			ConfigHelper.getIntListProperty(testCode + "-threads");
+		int[] batchSizes =
+			ConfigHelper.getIntListProperty(testCode + "-batch-size");
+		if (threadCounts == null || batchSizes == null) {
+			return;
+		}
+		String testName = ConfigHelper.getTestName(testCode);
+		int[] checkpoints =
+			ConfigHelper.getIntListProperty(testCode + "-checkpoints");
+		int objectCount = (checkpoints != null) ?
+			checkpoints[checkpoints.length - 1] :
+			ConfigHelper.getTestIntProperty(testCode, "total-objects");
+
+		// Print the speedup / parallel efficiency curves (per batch size):
+		if (threadCounts.length > 1) {
+			for (int batchSize : batchSizes) {
+				List<Map<String, Double>> results =
+					new ArrayList<Map<String, Double>>(threadCounts.length);
+				for (int threadCount : threadCounts) {
+					results.add(ResultHelper.getResults(persistenceUnitName,
+						testName, threadCount, batchSize, objectCount));
+				}
+				System.out.println("Scalability of " + persistenceUnitName +
+					" -> " + testName + "(batch=" + batchSize +
+					") [threads -> speedup (parallel efficiency)]:");
+				System.out.print(
+					ResultHelper.formatScalability(threadCounts, results));
+			}
+		}
+
+		// Print the throughput / batch size curves (per thread count):
+		if (batchSizes.length > 1) {
+			for (int threadCount : threadCounts) {
+				List<Map<String, Double>> results =
+					new ArrayList<Map<String, Double>>(batchSizes.length);
+				for (int batchSize : batchSizes) {
+					results.add(ResultHelper.getResults(persistenceUnitName,
+						testName, threadCount, batchSize, objectCount));
+				}
+				System.out.println("Batch size curve of " +
+					persistenceUnitName + " -> " + testName + "(thread=" +
+					threadCount + ") [batch size -> actions per second]:");
+				System.out.print(ResultHelper.formatCurve(batchSizes, results));
 			}
 		}
 	}
 
 	/**
 	 * Runs ONE test on a single JPA Provider / DBMS combination mode.
+	 *
+	 * @param testCode the test code
+	 * @param overrides test property values of a single sweep run
+	 * @param jarFilePaths the classpath JAR files
 	 */
-	private void runTest(String testCode, String[] jarFilePaths) {
+	private void runTest(String testCode, Map<String, String> overrides,
+			String[] jarFilePaths) {
 		// Prepare the test name:
-		String testName = FormatHelper.getShortClassName(
-			ConfigHelper.getProperty(testCode + "-class"));
+		String testName = ConfigHelper.getTestName(testCode);
 
 		// Exclude tests from some providers:
 		String exclude = ConfigHelper.getProperty(testCode + "-exclude");
@@ -355,6 +491,27 @@ public final class Main {
 			return;
 		}
 
+		// Exclude tests by values that the provider does not support
+		// (e.g. "exclude-query-api=CRITERIA,NATIVE" in the provider file):
+		for (String propertyName : jpaProperties.stringPropertyNames()) {
+			if (!propertyName.startsWith("exclude-")) {
+				continue;
+			}
+			String value = ConfigHelper.getProperty(
+				testCode + propertyName.substring(7));
+			if (value == null) {
+				continue;
+			}
+			for (String excluded :
+					jpaProperties.getProperty(propertyName).split(",")) {
+				if (excluded.trim().equalsIgnoreCase(value.trim())) {
+					System.out.println("Skipped " + persistenceUnitName +
+						" -> " + testName + " (" + propertyName + ")");
+					return;
+				}
+			}
+		}
+
 		// Start the launcher:
 		List<String> argList = new ArrayList<String>(3);
 		argList.add(persistenceUnitName);
@@ -364,6 +521,9 @@ public final class Main {
 			String dbPath = dataPath.replace("$", dbFileName);
 			argList.add(dbPath);
 		}
+		for (Map.Entry<String, String> entry : overrides.entrySet()) {
+			argList.add(entry.getKey() + '=' + entry.getValue());
+		}
 		Launcher launcher = new Launcher(
 			javaAgentPath, jarFilePaths, Runner.class, argList);
 		long startTime = System.currentTimeMillis();
@@ -371,7 +531,7 @@ public final class Main {
 
 		// Print a message:
 		System.out.println("Starting " +
-			persistenceUnitName + " -> " + testName);
+			persistenceUnitName + " -> " + testName + " " + overrides);
 
 		// Wait for the launcher's and its subprocess:
 		try {
@@ -404,9 +564,10 @@ public final class Main {
 	/**
 	 * Builds a dynamic persistence.xml with a single persistence unit.
 	 *
+	 * @param testCode the code of the test that uses the persistence unit
 	 * @return the persistence.xml content as a string.
 	 */
-	private String buildPersistenceXml() {
+	private String buildPersistenceXml(String testCode) {
 		// Start creating a dynamic persistence.xml:
 		StringBuilder sb = new StringBuilder(1024);
 		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
@@ -427,13 +588,29 @@ public final class Main {
 		sb.append(jpaProperties.getProperty("provider"));
 		sb.append("</provider>").append(FormatHelper.NEW_LINE);
 
+		// Write the generated mapping file (if any):
+		if (buildOrmXml(testCode) != null) {
+			sb.append("    <mapping-file>META-INF/");
+			sb.append(FileHelper.ORM_XML_FILE.getName());
+			sb.append("</mapping-file>").append(FormatHelper.NEW_LINE);
+		}
+
 		// Write the entity classes:
-		for (Class entityClass : ENTITY_CLASSES) {
+		for (Class entityClass : getEntityClasses(testCode)) {
 			sb.append("    <class>");
 			sb.append(entityClass.getName());
 			sb.append("</class>").append(FormatHelper.NEW_LINE);
 		}
 
+		// Write the shared (L2) cache mode (e.g. ENABLE_SELECTIVE):
+		String sharedCacheMode =
+			ConfigHelper.getProperty(testCode + "-shared-cache-mode");
+		if (sharedCacheMode != null) {
+			sb.append("    <shared-cache-mode>");
+			sb.append(sharedCacheMode.trim());
+			sb.append("</shared-cache-mode>").append(FormatHelper.NEW_LINE);
+		}
+
 		// Write the properties opening tag:
 		sb.append("    <properties>").append(FormatHelper.NEW_LINE);
 
@@ -446,13 +623,22 @@ public final class Main {
 		String password = dbmsProperties.getProperty(mode + "-password");
 		String customConnectionProperty = jpaProperties.getProperty(mode + "-connection");
 
+		// Connect through a statement counting driver (JDBC DBMS only):
+		String connectionDriver = driver;
+		String connectionUrl = url;
+		if (Boolean.parseBoolean(
+				ConfigHelper.getProperty(testCode + "-count-statements"))) {
+			connectionDriver = CountingDriver.class.getName();
+			connectionUrl = CountingDriver.wrapUrl(url, driver);
+		}
+
 		// Write connection properties:
 		if (customConnectionProperty == null) {
 			// Write standard JPA connection properties:
-			if (driver != null) {
-				appendProperty(sb, "javax.persistence.jdbc.driver", driver);
+			if (connectionDriver != null) {
+				appendProperty(sb, "javax.persistence.jdbc.driver", connectionDriver);
 			}
-			appendProperty(sb, "javax.persistence.jdbc.url", url);
+			appendProperty(sb, "javax.persistence.jdbc.url", connectionUrl);
 			if (user != null) {
 				appendProperty(sb, "javax.persistence.jdbc.user", user);
 			}
@@ -462,8 +648,8 @@ public final class Main {
 		}
 		else {
 			// Write a JPA vendor specific connection property:
-			customConnectionProperty = customConnectionProperty.replace("$url", url);
-			customConnectionProperty = customConnectionProperty.replace("$driver", driver);
+			customConnectionProperty = customConnectionProperty.replace("$url", connectionUrl);
+			customConnectionProperty = customConnectionProperty.replace("$driver", connectionDriver);
 			if (user != null) {
 				customConnectionProperty = customConnectionProperty.replace("$user", user);
 			}
@@ -485,11 +671,66 @@ public final class Main {
 			appendProperty(sb, "jpab.password", password);
 		}
 
+		// Write the transaction isolation level (e.g. READ_COMMITTED):
+		String isolation = ConfigHelper.getProperty(testCode + "-isolation");
+		String isolationProperty = jpaProperties.getProperty("isolation-property");
+		if (isolation != null && isolationProperty != null) {
+			isolation = isolation.trim();
+			int isolationLevel;
+			try {
+				isolationLevel = java.sql.Connection.class.getField(
+					"TRANSACTION_" + isolation).getInt(null);
+			}
+			catch (Exception e) {
+				throw new IllegalArgumentException("Invalid isolation level " +
+					isolation + " in benchmark property " + testCode + "-isolation");
+			}
+			isolationProperty = isolationProperty.replace(
+				"$level", String.valueOf(isolationLevel));
+			isolationProperty = isolationProperty.replace(
+				"$name", isolation.toLowerCase().replace('_', '-'));
+			appendProperty(sb, isolationProperty);
+		}
+
+		// Write the connection pool profile (from the provider directory):
+		String pool = ConfigHelper.getProperty(testCode + "-pool");
+		if (pool != null) {
+			String prefix = "pool-" + pool.trim() + '-';
+			String poolType = jpaProperties.getProperty(prefix + "type", "jpab");
+			String poolMin = jpaProperties.getProperty(prefix + "min", "0").trim();
+			String poolMax = jpaProperties.getProperty(prefix + "max");
+			if (poolMax == null) {
+				throw new IllegalArgumentException("Missing property " +
+					prefix + "max for pool profile " + pool + " of " + jpaName);
+			}
+			poolMax = poolMax.trim();
+			if ("jpab".equals(poolType.trim())) {
+				// The instrumented pool (see Runner and PoolDataSource):
+				appendProperty(sb, "jpab.pool-min", poolMin);
+				appendProperty(sb, "jpab.pool-max", poolMax);
+				String poolTimeout = jpaProperties.getProperty(prefix + "timeout");
+				if (poolTimeout != null) {
+					appendProperty(sb, "jpab.pool-timeout", poolTimeout.trim());
+				}
+			}
+			else {
+				// The internal pool of the JPA provider ($min, $max):
+				for (String propertyName : jpaProperties.stringPropertyNames()) {
+					if (propertyName.startsWith(prefix + "property")) {
+						appendProperty(sb, jpaProperties.getProperty(propertyName)
+							.replace("$min", poolMin).replace("$max", poolMax));
+					}
+				}
+			}
+		}
+
 		// Write additional properties:
 		String dbmsName = dbmsProperties.getProperty("name").trim();
 		for (String propertyName : jpaProperties.stringPropertyNames()) {
 			if (propertyName.startsWith("property")
-					|| propertyName.equals(dbmsName)) {
+					|| propertyName.equals(dbmsName)
+					|| propertyName.startsWith("cache-property")
+						&& sharedCacheMode != null) {
 				appendProperty(sb, jpaProperties.getProperty(propertyName));
 			}
 		}
@@ -506,6 +747,117 @@ public final class Main {
 		return str;
 	}
 
+	/**
+	 * Gets the entity classes to list in the persistence unit of a test.
+	 *
+	 * @param testCode the code of the test that uses the persistence unit
+	 * @return the entity classes of the persistence unit.
+	 */
+	private static List<Class> getEntityClasses(String testCode) {
+		List<Class> entityClassList =
+			new ArrayList<Class>(Arrays.asList(ENTITY_CLASSES));
+		Class testEntityClass = Test.newInstance(testCode).getEntityClass();
+		for (Class entityClass : OPTIONAL_ENTITY_CLASSES) {
+			if (testEntityClass.isAssignableFrom(entityClass)) {
+				entityClassList.add(entityClass);
+			}
+		}
+		return entityClassList;
+	}
+
+	/**
+	 * Builds a dynamic mapping file with test specific metadata overrides.
+	 *
+	 * @param testCode the code of the test that uses the persistence unit
+	 * @return the mapping file content (or null if no override is needed).
+	 */
+	private String buildOrmXml(String testCode) {
+		StringBuilder entities = new StringBuilder(256);
+
+		// Override the inheritance strategy of the hierarchy roots:
+		String inheritance =
+			ConfigHelper.getProperty(testCode + "-inheritance");
+		if (inheritance != null) {
+			List<Class> entityClassList = getEntityClasses(testCode);
+			for (Class entityClass : OPTIONAL_ENTITY_CLASSES) {
+				if (entityClass.getSuperclass() == Object.class &&
+						entityClassList.contains(entityClass)) {
+					entities.append("  <entity class=\"");
+					entities.append(entityClass.getName()).append("\">");
+					entities.append(FormatHelper.NEW_LINE);
+					entities.append("    <inheritance strategy=\"");
+					entities.append(inheritance.trim()).append("\"/>");
+					entities.append(FormatHelper.NEW_LINE);
+					entities.append("  </entity>").append(FormatHelper.NEW_LINE);
+				}
+			}
+		}
+
+		// Override the allocation size of the id generators (IdTest):
+		StringBuilder generators = new StringBuilder(256);
+		String allocationSize =
+			ConfigHelper.getProperty(testCode + "-allocation-size");
+		if (allocationSize != null) {
+			generators.append("  <sequence-generator name=\"idSeq\" ");
+			generators.append("allocation-size=\"");
+			generators.append(allocationSize.trim()).append("\"/>");
+			generators.append(FormatHelper.NEW_LINE);
+			generators.append("  <table-generator name=\"idTableSeq\" ");
+			generators.append("allocation-size=\"");
+			generators.append(allocationSize.trim()).append("\"/>");
+			generators.append(FormatHelper.NEW_LINE);
+		}
+
+		// Define the named queries of the test (query-api=NAMED):
+		StringBuilder queries = new StringBuilder(256);
+		String queryApi = ConfigHelper.getProperty(testCode + "-query-api");
+		if (queryApi != null && queryApi.trim().equals("NAMED")) {
+			String entityName = Test.newInstance(testCode).getEntityName();
+			appendNamedQuery(queries, Test.PREFIX_QUERY_NAME,
+				Test.getPrefixJpql(entityName));
+			appendNamedQuery(queries, Test.RANGE_QUERY_NAME,
+				Test.getRangeJpql(entityName));
+		}
+		if (generators.length() == 0 && queries.length() == 0 &&
+				entities.length() == 0) {
+			return null;
+		}
+
+		// Wrap the generator, query and entity elements:
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		sb.append(FormatHelper.NEW_LINE);
+		sb.append("<entity-mappings ");
+		sb.append("xmlns=\"http://java.sun.com/xml/ns/persistence/orm\" ");
+		sb.append("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" ");
+		sb.append("xsi:schemaLocation=\"http://java.sun.com/xml/ns/persistence/orm ");
+		sb.append("http://java.sun.com/xml/ns/persistence/orm_2_0.xsd\" ");
+		sb.append("version=\"2.0\">").append(FormatHelper.NEW_LINE);
+		sb.append(generators); // the schema order: generators, queries, entities
+		sb.append(queries);
+		sb.append(entities);
+		sb.append("</entity-mappings>").append(FormatHelper.NEW_LINE);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a named query to a mapping file.
+	 *
+	 * @param sb a StringBuilder to append the named query to
+	 * @param name the query name
+	 * @param jpql the query string
+	 */
+	private static void appendNamedQuery(
+			StringBuilder sb, String name, String jpql) {
+		sb.append("  <named-query name=\"").append(name).append("\">");
+		sb.append(FormatHelper.NEW_LINE);
+		sb.append("    <query>");
+		sb.append(jpql.replace("&", "&amp;").replace("<", "&lt;")
+			.replace(">", "&gt;"));
+		sb.append("</query>").append(FormatHelper.NEW_LINE);
+		sb.append("  </named-query>").append(FormatHelper.NEW_LINE);
+	}
+
 	/**
 	 * Appends a property to a persistence unit definition.
 	 *
@@ -0,0 +1,118 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.lang.management.*;
+import java.lang.reflect.*;
+
+
+/**
+ * Helper static methods for measuring the heap memory usage.
+ */
+public abstract class MemoryHelper {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Number of garbage collection rounds before a stable measurement */
+	private static final int GC_ROUNDS = 3;
+
+	/** Thread allocation counter (HotSpot specific - null if unavailable) */
+	private static final Method ALLOCATED_BYTES_METHOD =
+		getAllocatedBytesMethod();
+
+	//-------------//
+	// Heap Memory //
+	//-------------//
+
+	/**
+	 * Gets the current used heap memory (including garbage).
+	 *
+	 * @return the used heap memory in bytes.
+	 */
+	public static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Gets the used heap memory after garbage collection (live objects).
+	 *
+	 * @return the used heap memory in bytes.
+	 */
+	public static long getUsedHeapAfterGc() {
+		for (int i = 0; i < GC_ROUNDS; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100); // let finalization complete
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return getUsedHeap();
+	}
+
+	//---------------------//
+	// Allocation Counting //
+	//---------------------//
+
+	/**
+	 * Gets the total number of bytes allocated by the current thread.
+	 *
+	 * @return the allocated bytes so far (or -1 if unsupported).
+	 */
+	public static long getAllocatedBytes() {
+		if (ALLOCATED_BYTES_METHOD == null) {
+			return -1;
+		}
+		try {
+			Object result = ALLOCATED_BYTES_METHOD.invoke(
+				ManagementFactory.getThreadMXBean(),
+				Long.valueOf(Thread.currentThread().getId()));
+			return ((Long)result).longValue();
+		}
+		catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Gets the HotSpot ThreadMXBean.getThreadAllocatedBytes(long) method.
+	 *
+	 * @return the method (or null if it is unavailable on this JVM).
+	 */
+	private static Method getAllocatedBytesMethod() {
+		try {
+			Class<?> beanClass =
+				Class.forName("com.sun.management.ThreadMXBean");
+			if (!beanClass.isInstance(ManagementFactory.getThreadMXBean())) {
+				return null;
+			}
+			return beanClass.getMethod(
+				"getThreadAllocatedBytes", Long.TYPE);
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+}
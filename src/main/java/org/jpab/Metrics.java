@@ -0,0 +1,321 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Additional measurements of a test action (beyond the action count).
+ * Every metric is reported by Runner as a separate result line.
+ */
+public final class Metrics {
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** Event counters (reported as events per second) */
+	private final ConcurrentMap<String, AtomicLong> counterMap =
+		new ConcurrentHashMap<String, AtomicLong>();
+
+	/** Peak values (reported as is) */
+	private final ConcurrentMap<String, AtomicLong> peakMap =
+		new ConcurrentHashMap<String, AtomicLong>();
+
+	/** Ratios - pairs of {hits, total} (reported as percentages) */
+	private final ConcurrentMap<String, AtomicLongArray> ratioMap =
+		new ConcurrentHashMap<String, AtomicLongArray>();
+
+	/** Averages - pairs of {sum, count} (reported as sum / count) */
+	private final ConcurrentMap<String, AtomicLongArray> averageMap =
+		new ConcurrentHashMap<String, AtomicLongArray>();
+
+	/** Latency distributions (reported as mean and percentiles in ms) */
+	private final ConcurrentMap<String, Histogram> latencyMap =
+		new ConcurrentHashMap<String, Histogram>();
+
+	//-----------//
+	// Recording //
+	//-----------//
+
+	/**
+	 * Counts events (e.g. lock conflicts).
+	 *
+	 * @param name the metric name
+	 * @param delta number of events to add
+	 */
+	public void count(String name, long delta) {
+		AtomicLong counter = counterMap.get(name);
+		if (counter == null) {
+			counterMap.putIfAbsent(name, new AtomicLong());
+			counter = counterMap.get(name);
+		}
+		counter.addAndGet(delta);
+	}
+
+	/**
+	 * Records a value that is reported as a maximum (e.g. heap usage).
+	 *
+	 * @param name the metric name
+	 * @param value the current value
+	 */
+	public void peak(String name, long value) {
+		AtomicLong peak = peakMap.get(name);
+		if (peak == null) {
+			peakMap.putIfAbsent(name, new AtomicLong(Long.MIN_VALUE));
+			peak = peakMap.get(name);
+		}
+		for (long current; (current = peak.get()) < value; ) {
+			if (peak.compareAndSet(current, value)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Records an event that is reported as a ratio (e.g. cache hits).
+	 *
+	 * @param name the metric name
+	 * @param isHit true - for a hit; false - for a miss
+	 */
+	public void ratio(String name, boolean isHit) {
+		AtomicLongArray ratio = ratioMap.get(name);
+		if (ratio == null) {
+			ratioMap.putIfAbsent(name, new AtomicLongArray(2));
+			ratio = ratioMap.get(name);
+		}
+		if (isHit) {
+			ratio.incrementAndGet(0);
+		}
+		ratio.incrementAndGet(1);
+	}
+
+	/**
+	 * Records a total that is reported as an average (e.g. bytes per row).
+	 *
+	 * @param name the metric name
+	 * @param sum the total of the recorded items
+	 * @param count number of recorded items
+	 */
+	public void average(String name, long sum, long count) {
+		AtomicLongArray average = averageMap.get(name);
+		if (average == null) {
+			averageMap.putIfAbsent(name, new AtomicLongArray(2));
+			average = averageMap.get(name);
+		}
+		average.addAndGet(0, sum);
+		average.addAndGet(1, count);
+	}
+
+	/**
+	 * Records a latency of a single operation.
+	 *
+	 * @param name the metric name
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void latency(String name, long nanos) {
+		Histogram histogram = latencyMap.get(name);
+		if (histogram == null) {
+			latencyMap.putIfAbsent(name, new Histogram());
+			histogram = latencyMap.get(name);
+		}
+		histogram.add(nanos);
+	}
+
+	/**
+	 * Clears all the metrics (e.g. at the end of the warm up).
+	 */
+	public void reset() {
+		counterMap.clear();
+		peakMap.clear();
+		ratioMap.clear();
+		averageMap.clear();
+		latencyMap.clear();
+	}
+
+	//-----------//
+	// Reporting //
+	//-----------//
+
+	/**
+	 * Gets the reportable results of all the metrics.
+	 *
+	 * @param elapsedTime the measured time in nanoseconds (for rates)
+	 * @return map of result names to result values (sorted by name).
+	 */
+	public Map<String, Double> getResults(long elapsedTime) {
+		Map<String, Double> resultMap = new TreeMap<String, Double>();
+		for (Map.Entry<String, AtomicLong> entry : counterMap.entrySet()) {
+			resultMap.put(entry.getKey(), Double.valueOf(
+				entry.getValue().get() * 1e9 / elapsedTime));
+		}
+		for (Map.Entry<String, AtomicLong> entry : peakMap.entrySet()) {
+			resultMap.put(entry.getKey(),
+				Double.valueOf(entry.getValue().get()));
+		}
+		for (Map.Entry<String, AtomicLongArray> entry : ratioMap.entrySet()) {
+			long total = entry.getValue().get(1);
+			resultMap.put(entry.getKey(), Double.valueOf((total == 0) ? 0 :
+				100.0 * entry.getValue().get(0) / total));
+		}
+		for (Map.Entry<String, AtomicLongArray> entry : averageMap.entrySet()) {
+			long count = entry.getValue().get(1);
+			resultMap.put(entry.getKey(), Double.valueOf((count == 0) ? 0 :
+				(double)entry.getValue().get(0) / count));
+		}
+		for (Map.Entry<String, Histogram> entry : latencyMap.entrySet()) {
+			Histogram histogram = entry.getValue();
+			String name = entry.getKey();
+			resultMap.put(name, Double.valueOf(histogram.getMean() / 1e6));
+			resultMap.put(name + "P50",
+				Double.valueOf(histogram.getPercentile(0.5) / 1e6));
+			resultMap.put(name + "P99",
+				Double.valueOf(histogram.getPercentile(0.99) / 1e6));
+			resultMap.put(name + "Max",
+				Double.valueOf(histogram.getMax() / 1e6));
+		}
+		return resultMap;
+	}
+
+	//-----------//
+	// Histogram //
+	//-----------//
+
+	/**
+	 * Lock free log-linear histogram of non negative long values
+	 * (4 sub buckets per power of 2 - percentiles are accurate to ~12%).
+	 */
+	static final class Histogram {
+
+		/** Number of sub buckets per power of 2 (as a power of 2) */
+		private static final int SUB_BITS = 2;
+
+		/** Value counts per bucket */
+		private final AtomicLongArray counts =
+			new AtomicLongArray(64 << SUB_BITS);
+
+		/** Total number of values */
+		private final AtomicLong totalCount = new AtomicLong();
+
+		/** Sum of all the values */
+		private final AtomicLong totalSum = new AtomicLong();
+
+		/** Maximum value */
+		private final AtomicLong max = new AtomicLong();
+
+		/**
+		 * Adds a value.
+		 *
+		 * @param value a non negative value
+		 */
+		void add(long value) {
+			value = Math.max(value, 0);
+			counts.incrementAndGet(getBucket(value));
+			totalCount.incrementAndGet();
+			totalSum.addAndGet(value);
+			for (long current; (current = max.get()) < value; ) {
+				if (max.compareAndSet(current, value)) {
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Gets the number of added values.
+		 *
+		 * @return the number of added values.
+		 */
+		long getCount() {
+			return totalCount.get();
+		}
+
+		/**
+		 * Gets the mean of the added values.
+		 *
+		 * @return the mean (or 0 if empty).
+		 */
+		double getMean() {
+			long count = totalCount.get();
+			return (count == 0) ? 0 : (double)totalSum.get() / count;
+		}
+
+		/**
+		 * Gets the maximum added value.
+		 *
+		 * @return the maximum added value.
+		 */
+		long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * Gets an approximate percentile of the added values.
+		 *
+		 * @param fraction the percentile as a fraction (e.g. 0.99)
+		 * @return the upper bound of the percentile bucket (or 0 if empty).
+		 */
+		long getPercentile(double fraction) {
+			long count = totalCount.get();
+			long target = Math.max(1, (long)Math.ceil(count * fraction));
+			long sum = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				sum += counts.get(i);
+				if (sum >= target) {
+					return Math.min(getBucketLimit(i), max.get());
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Gets the bucket of a specified value.
+		 *
+		 * @param value a non negative value
+		 * @return the bucket index.
+		 */
+		private static int getBucket(long value) {
+			int exp = 63 - Long.numberOfLeadingZeros(value);
+			if (exp <= SUB_BITS) {
+				return (int)value; // exact buckets for small values
+			}
+			int sub = (int)(value >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+			return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+		}
+
+		/**
+		 * Gets the highest value of a specified bucket.
+		 *
+		 * @param bucket the bucket index
+		 * @return the highest value that belongs to that bucket.
+		 */
+		private static long getBucketLimit(int bucket) {
+			if (bucket < (2 << SUB_BITS)) {
+				return bucket;
+			}
+			int exp = (bucket >> SUB_BITS) + SUB_BITS - 1;
+			long sub = bucket & ((1 << SUB_BITS) - 1);
+			long low = ((1L << SUB_BITS) | sub) << (exp - SUB_BITS);
+			return low + (1L << (exp - SUB_BITS)) - 1;
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.sql.*;
+
+
+/**
+ * Instrumented JDBC connection pool (used instead of the provider pool).
+ *
+ * Every connection acquisition records the wait time ("PoolWait"), the
+ * active and idle connection counts ("PoolActive", "PoolIdle") and
+ * timeouts ("PoolTimeouts") in the metrics of the running test.
+ */
+final class PoolDataSource implements DataSource {
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The JDBC URL of the physical connections */
+	private final String url;
+
+	/** The database user (or null) */
+	private final String user;
+
+	/** The database password (or null) */
+	private final String password;
+
+	/** Number of connections that are opened in advance */
+	private final int minSize;
+
+	/** Maximum time to wait for a connection (in milliseconds) */
+	private final long timeout;
+
+	/** Available permits (one per connection that may be acquired) */
+	private final Semaphore permits;
+
+	/** Idle physical connections */
+	private final Queue<Connection> idleConnections =
+		new ConcurrentLinkedQueue<Connection>();
+
+	/** Number of acquired connections */
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	/** Metrics of the running test (for reporting) */
+	private final Metrics metrics;
+
+	/** Log writer (required by DataSource - not in use) */
+	private PrintWriter logWriter;
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Constructs a pool and opens the minimum number of connections.
+	 *
+	 * @param url the JDBC URL of the physical connections
+	 * @param user the database user (or null)
+	 * @param password the database password (or null)
+	 * @param minSize number of connections to open in advance
+	 * @param maxSize maximum number of connections
+	 * @param timeout maximum time to wait for a connection (in ms)
+	 * @param metrics metrics of the running test (for reporting)
+	 */
+	PoolDataSource(String url, String user, String password,
+			int minSize, int maxSize, long timeout, Metrics metrics)
+			throws SQLException {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.minSize = minSize;
+		this.timeout = timeout;
+		this.permits = new Semaphore(maxSize, true);
+		this.metrics = metrics;
+		fill();
+	}
+
+	//-----------------//
+	// Pool Operations //
+	//-----------------//
+
+	/**
+	 * Acquires a connection (waits if all the connections are in use).
+	 *
+	 * @return a pooled connection (returned to the pool when closed).
+	 */
+	public Connection getConnection() throws SQLException {
+		// Wait for a permit:
+		long startTime = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+				metrics.count("PoolTimeouts", 1);
+				throw new SQLException("Connection pool timeout (" +
+					timeout + "ms)");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection");
+		}
+		metrics.latency("PoolWait", System.nanoTime() - startTime);
+
+		// Reuse an idle connection or open a new one:
+		Connection connection = idleConnections.poll();
+		try {
+			if (connection == null) {
+				connection = openConnection();
+			}
+		}
+		catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+		int active = activeCount.incrementAndGet();
+		metrics.average("PoolActive", active, 1);
+		metrics.average("PoolIdle", idleConnections.size(), 1);
+		return wrap(connection);
+	}
+
+	/**
+	 * Acquires a connection (the credentials are ignored).
+	 *
+	 * @param username ignored
+	 * @param password ignored
+	 * @return a pooled connection (returned to the pool when closed).
+	 */
+	public Connection getConnection(String username, String password)
+			throws SQLException {
+		return getConnection();
+	}
+
+	/**
+	 * Opens connections in advance up to the minimum size of the pool
+	 * (on construction and again after the pool has been closed).
+	 */
+	void fill() throws SQLException {
+		while (idleConnections.size() + activeCount.get() < minSize) {
+			idleConnections.add(openConnection());
+		}
+	}
+
+	/**
+	 * Closes all the idle connections (the pool can be refilled later).
+	 */
+	void close() {
+		for (Connection connection; (connection = idleConnections.poll()) != null; ) {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				// ignored - the pool is closed anyway
+			}
+		}
+	}
+
+	/**
+	 * Opens a new physical connection.
+	 *
+	 * @return the new connection.
+	 */
+	private Connection openConnection() throws SQLException {
+		return (user != null) ?
+			DriverManager.getConnection(url, user, password) :
+			DriverManager.getConnection(url);
+	}
+
+	/**
+	 * Wraps a physical connection with a proxy that returns it to the pool
+	 * on close (once).
+	 *
+	 * @param connection the physical connection
+	 * @return the proxy.
+	 */
+	private Connection wrap(final Connection connection) {
+		return (Connection)Proxy.newProxyInstance(
+			PoolDataSource.class.getClassLoader(),
+			new Class[] { Connection.class }, new InvocationHandler() {
+				private boolean isClosed;
+				public Object invoke(Object proxy, Method method,
+						Object[] args) throws Throwable {
+					String name = method.getName();
+					if ("close".equals(name)) {
+						if (!isClosed) {
+							isClosed = true;
+							if (!connection.getAutoCommit()) {
+								connection.rollback(); // a clean connection
+							}
+							activeCount.decrementAndGet();
+							idleConnections.add(connection);
+							permits.release();
+						}
+						return null;
+					}
+					if ("isClosed".equals(name)) {
+						return Boolean.valueOf(isClosed);
+					}
+					if (isClosed) {
+						throw new SQLException("Connection is closed");
+					}
+					try {
+						return method.invoke(connection, args);
+					}
+					catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			});
+	}
+
+	//----------------------//
+	// DataSource Interface //
+	//----------------------//
+
+	public PrintWriter getLogWriter() {
+		return logWriter;
+	}
+
+	public void setLogWriter(PrintWriter out) {
+		logWriter = out;
+	}
+
+	public void setLoginTimeout(int seconds) {
+		DriverManager.setLoginTimeout(seconds);
+	}
+
+	public int getLoginTimeout() {
+		return DriverManager.getLoginTimeout();
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException("Not a wrapper");
+	}
+
+	public boolean isWrapperFor(Class<?> iface) {
+		return false;
+	}
+
+	public java.util.logging.Logger getParentLogger()
+			throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+}
@@ -106,6 +106,10 @@ public final class Randomizer {
 
 	// Random Numbers:
 
+	static void setSeed(long seed) {
+		random.setSeed(seed); // for generating the same data in every run
+	}
+
 	public static int randomInt(int min, int max) {
         return max <= min ? min : (random.nextInt(max - min + 1) + min);
     }
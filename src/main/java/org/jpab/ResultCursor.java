@@ -0,0 +1,148 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.lang.reflect.*;
+import javax.persistence.PersistenceException;
+
+
+/**
+ * Forward only cursor on a query result, wrapping a provider API by
+ * reflection: a Hibernate ScrollableResults or an EclipseLink
+ * CursoredStream.
+ */
+final class ResultCursor {
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The provider cursor */
+	private final Object cursor;
+
+	/** True for ScrollableResults (next + get); false for CursoredStream */
+	private final boolean scrollable;
+
+	/** Advances the cursor (ScrollableResults) / checks for more results */
+	private final Method nextMethod;
+
+	/** Gets the current (ScrollableResults) / next result */
+	private final Method getMethod;
+
+	/** Releases the results that have been read (CursoredStream only) */
+	private final Method releaseMethod;
+
+	/** Closes the cursor */
+	private final Method closeMethod;
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Constructs a cursor wrapper.
+	 *
+	 * @param cursor a ScrollableResults or a CursoredStream instance
+	 * @param cursorClass the public class / interface of the cursor
+	 */
+	ResultCursor(Object cursor, Class<?> cursorClass)
+			throws NoSuchMethodException {
+		this.cursor = cursor;
+		this.scrollable = cursorClass.isInterface();
+		if (scrollable) {
+			nextMethod = cursorClass.getMethod("next");
+			getMethod = cursorClass.getMethod("get");
+			releaseMethod = null;
+		}
+		else {
+			nextMethod = cursorClass.getMethod("hasNext");
+			getMethod = cursorClass.getMethod("next");
+			releaseMethod = cursorClass.getMethod("releasePrevious");
+		}
+		closeMethod = cursorClass.getMethod("close");
+	}
+
+	//------------//
+	// Operations //
+	//------------//
+
+	/**
+	 * Gets the next result.
+	 *
+	 * @return the next result - or null at the end of the result.
+	 */
+	Object next() {
+		if (!((Boolean)invoke(nextMethod)).booleanValue()) {
+			return null;
+		}
+		Object result = invoke(getMethod);
+		if (result instanceof Object[]) { // ScrollableResults before 6.0
+			result = ((Object[])result)[0];
+		}
+		return result;
+	}
+
+	/**
+	 * Releases the results that have been read (kept by a CursoredStream).
+	 */
+	void releasePage() {
+		if (releaseMethod != null) {
+			invoke(releaseMethod);
+		}
+	}
+
+	/**
+	 * Closes the cursor.
+	 */
+	void close() {
+		invoke(closeMethod);
+	}
+
+	/**
+	 * Invokes a no argument cursor method.
+	 *
+	 * @param method the method to invoke
+	 * @return the method result.
+	 */
+	private Object invoke(Method method) {
+		try {
+			return method.invoke(cursor);
+		}
+		catch (Exception e) {
+			throw toPersistenceException(e);
+		}
+	}
+
+	/**
+	 * Converts an exception of a reflective call to a runtime exception.
+	 *
+	 * @param e an exception thrown by a reflective call
+	 * @return the original runtime exception or a PersistenceException.
+	 */
+	static RuntimeException toPersistenceException(Exception e) {
+		Throwable cause = (e instanceof InvocationTargetException) ?
+			e.getCause() : e;
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException)cause;
+		}
+		return new PersistenceException(
+			"Result cursor failure: " + cause.getMessage(), cause);
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab;
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * Helper static methods for analyzing the results.txt file.
+ */
+abstract class ResultHelper {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Minimum throughput gain (per sweep step) that counts as scaling */
+	private static final double KNEE_GAIN = 1.1;
+
+	//--------------//
+	// Result Lines //
+	//--------------//
+
+	/**
+	 * Gets the latest numeric results of a specified run.
+	 *
+	 * Result lines are written by Runner in the following format:
+	 * "date time jpa dbms-mode test threads batch objects action result".
+	 *
+	 * @param puName the persistence unit name (jpa-dbms-mode)
+	 * @param testName the test name (as reported by Test.getName())
+	 * @param threadCount the number of threads of the run
+	 * @param batchSize the batch size of the run
+	 * @param objectCount the number of objects in the database
+	 * @return map of action names to results (in order of appearance).
+	 */
+	static Map<String, Double> getResults(String puName, String testName,
+			int threadCount, int batchSize, int objectCount) {
+		Map<String, Double> resultMap = new LinkedHashMap<String, Double>();
+		if (!FileHelper.RESULT_FILE.exists()) {
+			return resultMap;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(
+				new FileReader(FileHelper.RESULT_FILE));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split(" ", 10);
+					if (fields.length == 10 &&
+							puName.equals(fields[2] + '-' + fields[3]) &&
+							testName.equals(fields[4]) &&
+							fields[5].equals(String.valueOf(threadCount)) &&
+							fields[6].equals(String.valueOf(batchSize)) &&
+							fields[7].equals(String.valueOf(objectCount))) {
+						try {
+							// Later lines (newer runs) replace older lines:
+							resultMap.remove(fields[8]);
+							resultMap.put(fields[8], Double.valueOf(fields[9]));
+						}
+						catch (NumberFormatException e) {
+							// "started" or a failure - no numeric result
+						}
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Failed to read from result file");
+		}
+		return resultMap;
+	}
+
+	/**
+	 * Checks if a result name represents an action throughput.
+	 *
+	 * Throughput results are named by the action (e.g. "Retrieve").
+	 * Additional measurements are named "action-measurement" (e.g.
+	 * "Retrieve-Latency", "Persist-PeakHeap") and the disk space "Space".
+	 *
+	 * @param name the result name (as written by Runner)
+	 * @return true - if a throughput result; false - if not.
+	 */
+	private static boolean isThroughput(String name) {
+		return name.indexOf('-') < 0 && !"Space".equals(name);
+	}
+
+	//---------------------//
+	// Sweep Curve Reports //
+	//---------------------//
+
+	/**
+	 * Builds a throughput curve report of a sweep (e.g. over batch sizes).
+	 *
+	 * @param values the values of the swept property (ascending)
+	 * @param results results per value (action name to throughput)
+	 * @return the report (one line per action).
+	 */
+	static String formatCurve(int[] values, List<Map<String, Double>> results) {
+		StringBuilder sb = new StringBuilder(1024);
+		for (String actionName : results.get(0).keySet()) {
+			if (!isThroughput(actionName)) {
+				continue; // not a throughput result
+			}
+			sb.append("  ").append(actionName).append(':');
+			int bestValue = values[0];
+			double bestResult = -1;
+			String delimiter = " ";
+			for (int i = 0; i < values.length; i++) {
+				Double result = results.get(i).get(actionName);
+				if (result == null) {
+					continue; // missing result (e.g. a failed run)
+				}
+				sb.append(delimiter).append(values[i]).append(" -> ");
+				sb.append(FormatHelper.formatNumber(result.doubleValue()));
+				delimiter = " | ";
+				if (result.doubleValue() > bestResult) {
+					bestResult = result.doubleValue();
+					bestValue = values[i];
+				}
+			}
+			sb.append(" ; best: ").append(bestValue);
+			sb.append(FormatHelper.NEW_LINE);
+		}
+		return sb.toString();
+	}
+
+	//-------------------------//
+	// Scalability Calculation //
+	//-------------------------//
+
+	/**
+	 * Builds a speedup / parallel efficiency report of a thread sweep.
+	 *
+	 * @param threadCounts the thread counts of the sweep (ascending)
+	 * @param results results per thread count (action name to throughput)
+	 * @return the report (one line per action).
+	 */
+	static String formatScalability(int[] threadCounts,
+			List<Map<String, Double>> results) {
+		StringBuilder sb = new StringBuilder(1024);
+		for (String actionName : results.get(0).keySet()) {
+			Double baseResult = results.get(0).get(actionName);
+			if (!isThroughput(actionName) || baseResult.doubleValue() <= 0) {
+				continue; // not a throughput result
+			}
+			sb.append("  ").append(actionName).append(':');
+			int kneeThreadCount = threadCounts[0];
+			double lastResult = baseResult.doubleValue();
+			boolean isScaling = true;
+			for (int i = 0; i < threadCounts.length; i++) {
+				Double result = results.get(i).get(actionName);
+				if (result == null) {
+					continue; // missing result (e.g. a failed run)
+				}
+				double speedup = result.doubleValue() / baseResult.doubleValue();
+				double efficiency = speedup * threadCounts[0] / threadCounts[i];
+				sb.append(i == 0 ? " " : " | ").append(threadCounts[i]);
+				sb.append(" -> ").append(FormatHelper.formatNumber(speedup));
+				sb.append("x (");
+				sb.append(FormatHelper.formatInt(100 * efficiency)).append("%)");
+				if (isScaling && i > 0) {
+					if (result.doubleValue() >= lastResult * KNEE_GAIN) {
+						kneeThreadCount = threadCounts[i];
+						lastResult = result.doubleValue();
+					}
+					else {
+						isScaling = false;
+					}
+				}
+			}
+			sb.append(" ; knee: ").append(kneeThreadCount).append(" threads");
+			sb.append(FormatHelper.NEW_LINE);
+		}
+		return sb.toString();
+	}
+}
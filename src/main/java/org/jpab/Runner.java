@@ -47,14 +47,24 @@ public final class Runner {
 	 */
 	public static void main(String[] args) throws Exception {
 		// Check and get command line arguments:
-		if (args.length < 2 || args.length > 3) {
-			System.err.println("Usage: org.jpab.Runner "
-				+ "<pu-name> <test-code> [<data-path>]");
+		if (args.length < 2) {
+			System.err.println("Usage: org.jpab.Runner <pu-name> "
+				+ "<test-code> [<data-path>] [<test-property>=<value> ...]");
 			System.exit(1);
 		}
 		String persistenceUnitName = args[0];
 		String testCode = args[1];
-		String dbPath = (args.length >= 3) ? args[2] : null;
+		String dbPath = null;
+		for (int i = 2; i < args.length; i++) {
+			int eqPos = args[i].indexOf('=');
+			if (eqPos > 0) { // a single value of a sweep property
+				ConfigHelper.setProperty(testCode + '-' +
+					args[i].substring(0, eqPos), args[i].substring(eqPos + 1));
+			}
+			else {
+				dbPath = args[i];
+			}
+		}
 
 		// Try using JDBC to create a new empty server database:
 		if (persistenceUnitName.endsWith("-server")) {
@@ -62,8 +72,7 @@ public final class Runner {
 		}
 
 		// Construct the Test instance:
-		String className = ConfigHelper.getProperty(testCode + "-class");
-		Test test = (Test)Class.forName(className).newInstance();
+		Test test = Test.newInstance(testCode);
 		test.setThreadCount(
 			ConfigHelper.getIntProperty(testCode + "-threads"));
 		test.setBatchSize(
@@ -71,7 +80,7 @@ public final class Runner {
 
 		// Run the test:
 		try {
-			new Runner(persistenceUnitName, test, dbPath).run();
+			new Runner(persistenceUnitName, testCode, test, dbPath).run();
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -83,20 +92,7 @@ public final class Runner {
 	 */
 	private static void createDatabase() throws Exception {
 		// Extract all the persistence unit properties:
-		final Properties properties = new Properties();
-		XMLReader parser = XMLReaderFactory.createXMLReader();
-		parser.setContentHandler(new DefaultHandler() {
-			@Override
-			public void startElement(String uri, String localName, String name,
-					Attributes attributes) throws SAXException {
-				if ("property".equals(name)) {
-					properties.put(attributes.getValue("name"),
-						attributes.getValue("value"));
-				}
-			}
-		});
-		parser.parse(new InputSource(Runner.class.getResource(
-			"/META-INF/persistence.xml").openStream()));
+		Properties properties = loadPersistenceProperties();
 
 		// Load the JDBC driver:
 		String driver = properties.getProperty("jpab.driver");
@@ -126,6 +122,29 @@ public final class Runner {
 		}
 	}
 
+	/**
+	 * Loads the properties of the generated persistence unit.
+	 *
+	 * @return the persistence unit properties (from persistence.xml).
+	 */
+	private static Properties loadPersistenceProperties() throws Exception {
+		final Properties properties = new Properties();
+		XMLReader parser = XMLReaderFactory.createXMLReader();
+		parser.setContentHandler(new DefaultHandler() {
+			@Override
+			public void startElement(String uri, String localName, String name,
+					Attributes attributes) throws SAXException {
+				if ("property".equals(name)) {
+					properties.put(attributes.getValue("name"),
+						attributes.getValue("value"));
+				}
+			}
+		});
+		parser.parse(new InputSource(Runner.class.getResource(
+			"/META-INF/persistence.xml").openStream()));
+		return properties;
+	}
+
 	//-----------//
 	// Constants //
 	//-----------//
@@ -133,6 +152,9 @@ public final class Runner {
 	/** Nano seconds in one second */
 	private static final long NANO_PER_SEC = 1000000000L;
 
+	/** Maximum inventory size (in objects) while growing a database */
+	private static final int GROWTH_CHUNK_SIZE = 200000;
+
 	//--------------//
 	// Data Members //
 	//--------------//
@@ -160,7 +182,10 @@ public final class Runner {
 	private final int warmupObjectCount;
 
 	/** Total number of persisted objects (including warm up + test) */
-	private final int totalObjectCount;
+	private int totalObjectCount;
+
+	/** Database sizes to grow through in scaling mode (null - disabled) */
+	private final int[] checkpoints;
 
 	// All Action Scope:
 
@@ -170,6 +195,17 @@ public final class Runner {
 	/** Time per test run (in milliseconds) */
 	private final long totalTime;
 
+	// Batch Size Search:
+
+	/** Candidate batch sizes for the search (null - search is disabled) */
+	private final int[] batchCandidates;
+
+	/** Time for probing a single batch size (in nanoseconds) */
+	private final long probeTime;
+
+	/** Maximum average transaction latency in milliseconds (0 - none) */
+	private final double latencyCeiling;
+
 	// Running:
 
 	/** Currently tested action */
@@ -178,9 +214,19 @@ public final class Runner {
 	/** Connection factory for the test database */
 	private EntityManagerFactory emf;
 
+	/** Instrumented connection pool (null - the provider pool is used) */
+	private PoolDataSource pool;
+
+	/** Actions to run after the persist action (see getDefaultActions) */
+	private final List<Class<? extends TestAction>> actionClasses;
+
 	/** Test actions - one per thread (in most runs - one) */
 	private TestAction[] actions;
 
+	/** Results per action at every checkpoint (for scaling mode) */
+	private final Map<String, StringBuilder> scalingCurves =
+		new LinkedHashMap<String, StringBuilder>();
+
 	//--------------//
 	// Construction //
 	//--------------//
@@ -189,17 +235,29 @@ public final class Runner {
 	 * Constructs a Runner instance.
 	 *
 	 * @param persistenceUnitName name of the persistence unit
+	 * @param testCode the test code (e.g. "test1a")
 	 * @param test the test to be run
 	 * @param dbPath optional database path for calculating disk space
 	 */
-	private Runner(String persistenceUnitName, Test test, String dbPath) {
+	private Runner(String persistenceUnitName, String testCode, Test test,
+			String dbPath) {
 		// Prepare test run properties:
-		this.warmupObjectCount = ConfigHelper.getIntProperty("warmup-objects");
-		this.totalObjectCount = ConfigHelper.getIntProperty("total-objects");
+		this.warmupObjectCount =
+			ConfigHelper.getTestIntProperty(testCode, "warmup-objects");
+		this.checkpoints =
+			ConfigHelper.getIntListProperty(testCode + "-checkpoints");
+		this.totalObjectCount = (checkpoints != null) ? checkpoints[0] :
+			ConfigHelper.getTestIntProperty(testCode, "total-objects");
 		this.warmupTime = NANO_PER_SEC *
 			ConfigHelper.getIntProperty("warmup-time");
 		this.totalTime = NANO_PER_SEC *
 			ConfigHelper.getIntProperty("total-time");
+		this.batchCandidates =
+			ConfigHelper.getIntListProperty(testCode + "-batch-search");
+		this.probeTime = NANO_PER_SEC *
+			ConfigHelper.getIntProperty(testCode + "-probe-time", 5);
+		this.latencyCeiling =
+			ConfigHelper.getIntProperty(testCode + "-latency-ceiling", 0);
 
 		// Set the run context:
 		this.persistenceUnitName = persistenceUnitName;
@@ -208,7 +266,19 @@ public final class Runner {
 		this.dbName = persistenceUnitName.substring(ix + 1);
 		this.test = test;
 		this.dbDir = (dbPath != null) ? new File(dbPath) : FileHelper.WORK_DIR;
+		this.actionClasses = getActionClasses(testCode);
 		test.setEntityCount(totalObjectCount);
+		int[] selectivity =
+			ConfigHelper.getIntListProperty(testCode + "-selectivity");
+		if (selectivity != null) {
+			test.setSelectivity(selectivity);
+		}
+
+		// Generate the same data in every run (if a seed is specified):
+		String seed = ConfigHelper.getProperty(testCode + "-random-seed");
+		if (seed != null) {
+			Randomizer.setSeed(Long.parseLong(seed.trim()));
+		}
 		test.buildInventory(totalObjectCount * 13 / 10);
 
 		// Delete old databases (if any):
@@ -246,20 +316,235 @@ public final class Runner {
 		}
 
 		// Report the disk space usage:
+		reportDiskSpace(spaceBefore);
+
+		// Batch size search mode - only for persist and update:
+		if (batchCandidates != null) {
+			handleAction(UpdateAction.class);
+			return;
+		}
+
+		// Scaling mode - grow the database through all the checkpoints:
+		if (checkpoints != null) {
+			for (int checkpoint : checkpoints) {
+				if (checkpoint > totalObjectCount) {
+					growDatabase(checkpoint);
+					reportDiskSpace(spaceBefore);
+				}
+				for (Class<? extends TestAction> actionClass : actionClasses) {
+					handleAction(actionClass);
+				}
+			}
+			printScalingCurves();
+			return; // the database is not removed in scaling mode
+		}
+
+		// Test the other actions:
+		for (Class<? extends TestAction> actionClass : actionClasses) {
+			handleAction(actionClass);
+		}
+	}
+
+	/**
+	 * Gets the actions to run after the persist action.
+	 *
+	 * @param testCode the test code
+	 * @return the action classes (in order of execution).
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Class<? extends TestAction>> getActionClasses(
+			String testCode) {
+		String actionNames = ConfigHelper.getProperty(testCode + "-actions");
+		if (actionNames == null) {
+			actionNames = test.getDefaultActions();
+		}
+		List<Class<? extends TestAction>> actionClassList =
+			new ArrayList<Class<? extends TestAction>>(8);
+		for (String name : actionNames.split(",")) {
+			name = name.trim();
+			if (name.length() == 0 || name.endsWith("Query") && !test.hasQueries()) {
+				continue;
+			}
+			if (checkpoints != null && name.endsWith("Remove")) {
+				continue; // the database is not removed in scaling mode
+			}
+			if (name.equals("BulkRemove") && !test.supportsBulkRemove()) {
+				continue; // JPQL DELETE does not cascade to dependent rows
+			}
+			try {
+				actionClassList.add((Class<? extends TestAction>)Class.forName(
+					Runner.class.getName() + '$' + name + "Action"));
+			}
+			catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Unknown action " + name +
+					" in benchmark property " + testCode + "-actions");
+			}
+		}
+		return actionClassList;
+	}
+
+	/**
+	 * Gets the name of an action (as written to the result file).
+	 *
+	 * @param actionClass wraps a benchmark method (action)
+	 * @return the action name (e.g. "Retrieve" for RetrieveAction).
+	 */
+	private static String getActionName(
+			Class<? extends TestAction> actionClass) {
+		String name = FormatHelper.getShortClassName(actionClass);
+		if (name.endsWith("Action")) {
+			name = name.substring(0, name.length() - 6);
+		}
+		return name;
+	}
+
+	/**
+	 * Reports the disk space that is used by the database.
+	 *
+	 * @param spaceBefore the disk space before the test (in bytes)
+	 */
+	private void reportDiskSpace(long spaceBefore) {
 		long spaceAfter = FileHelper.getDiskSpace(dbDir);
 		long diskSpace = spaceAfter - spaceBefore;
 		long diskSpaceInMB = diskSpace >> 20;
 		System.out.println("Disk Space: " +
 			FormatHelper.formatInt(diskSpaceInMB) + "MB");
 		reportResult(Long.valueOf(diskSpace), "Space");
+	}
 
-		// Test the other actions:
-		handleAction(RetrieveAction.class);
-		if (test.hasQueries()) {
-			handleAction(QueryAction.class);
+	/**
+	 * Creates a connection factory for the test database, with the
+	 * instrumented connection pool if the pool profile type is "jpab".
+	 *
+	 * @return the new connection factory.
+	 */
+	private EntityManagerFactory createEntityManagerFactory() {
+		Properties properties;
+		try {
+			properties = loadPersistenceProperties();
+		}
+		catch (Exception e) {
+			throw new PersistenceException("Failed to read persistence.xml", e);
+		}
+		String poolMax = properties.getProperty("jpab.pool-max");
+		if (poolMax == null) {
+			return Persistence.createEntityManagerFactory(persistenceUnitName);
+		}
+
+		// Create the pool once (shared by all the factories of the run):
+		if (pool == null) {
+			try {
+				String driver = properties.getProperty(
+					"javax.persistence.jdbc.driver",
+					properties.getProperty("jpab.driver"));
+				if (driver != null) {
+					Class.forName(driver);
+				}
+				pool = new PoolDataSource(
+					properties.getProperty("javax.persistence.jdbc.url",
+						properties.getProperty("jpab.url")),
+					properties.getProperty("jpab.user"),
+					properties.getProperty("jpab.password"),
+					Integer.parseInt(properties.getProperty("jpab.pool-min", "0")),
+					Integer.parseInt(poolMax),
+					Long.parseLong(
+						properties.getProperty("jpab.pool-timeout", "30000")),
+					test.getMetrics());
+			}
+			catch (Exception e) {
+				throw new PersistenceException(
+					"Failed to create the connection pool", e);
+			}
+		}
+		else {
+			// Reopen the minimum connections (closed by the previous action):
+			try {
+				pool.fill();
+			}
+			catch (SQLException e) {
+				throw new PersistenceException(
+					"Failed to fill the connection pool", e);
+			}
+		}
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("javax.persistence.nonJtaDataSource", pool);
+		return Persistence.createEntityManagerFactory(persistenceUnitName, map);
+	}
+
+	//--------------//
+	// Scaling Mode //
+	//--------------//
+
+	/**
+	 * Grows the existing database (without rebuilding) to a specified size.
+	 *
+	 * @param objectCount the new total number of objects in the database
+	 */
+	private void growDatabase(int objectCount) {
+		System.out.println("Growing database to " +
+			FormatHelper.formatInt(objectCount) + " objects...");
+		long startTime = System.nanoTime();
+		EntityManagerFactory emf = createEntityManagerFactory();
+		try {
+			EntityManager em = emf.createEntityManager();
+			try {
+				// Persist in chunks (the inventory may not fit in the heap):
+				test.resetActionCount();
+				int growCount = objectCount - totalObjectCount;
+				while (test.getActionCount() < growCount) {
+					int chunkSize = Math.min(GROWTH_CHUNK_SIZE,
+						growCount - test.getActionCount());
+					test.buildInventory(chunkSize);
+					while (test.getInventorySize() > 0) {
+						test.persist(em, Math.min(20000, chunkSize));
+					}
+				}
+			}
+			finally {
+				test.clearInventory();
+				em.close();
+			}
+		}
+		finally {
+			emf.close();
+			if (pool != null) {
+				pool.close(); // refilled to pool-min by the next factory
+			}
+		}
+		totalObjectCount = objectCount;
+		test.setEntityCount(objectCount);
+		long elapsedTime = (System.nanoTime() - startTime) / NANO_PER_SEC;
+		System.out.println("Growth completed in " + elapsedTime + " seconds.");
+	}
+
+	/**
+	 * Adds a result to the throughput / database size curve of an action.
+	 *
+	 * @param actionName the name of the action
+	 * @param actionsPerSecond the action result at the current checkpoint
+	 */
+	private void addScalingPoint(String actionName, double actionsPerSecond) {
+		StringBuilder sb = scalingCurves.get(actionName);
+		if (sb == null) {
+			sb = new StringBuilder(256);
+			scalingCurves.put(actionName, sb);
+		}
+		else {
+			sb.append(" | ");
+		}
+		sb.append(FormatHelper.formatInt(totalObjectCount)).append(" -> ");
+		sb.append(FormatHelper.formatNumber(actionsPerSecond));
+	}
+
+	/**
+	 * Prints the throughput / database size curves of all the actions.
+	 */
+	private void printScalingCurves() {
+		System.out.println("Scaling curves (objects -> actions per second):");
+		for (Map.Entry<String, StringBuilder> entry :
+				scalingCurves.entrySet()) {
+			System.out.println("  " + entry.getKey() + ": " + entry.getValue());
 		}
-		handleAction(UpdateAction.class);
-		handleAction(RemoveAction.class);
 	}
 
 	/**
@@ -272,14 +557,11 @@ public final class Runner {
 
 		try {
 			// Prepare the action name:
-			actionName = FormatHelper.getShortClassName(actionClass);
-			if (actionName.endsWith("Action")) {
-				actionName = actionName.substring(0, actionName.length() - 6);
-			}
+			actionName = getActionName(actionClass);
 
 			// Create the database connection factory:
 			System.out.println("PU Name -> " + persistenceUnitName);
-			emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+			emf = createEntityManagerFactory();
 
 			// Prepare working threads for the test:
 			int threadCount = test.getThreadCount();
@@ -290,9 +572,24 @@ public final class Runner {
 				action.em = emf.createEntityManager(); // private per thread
 				actions[threadIx] = action;
 			}
+			for (TestAction action : actions) {
+				action.prepare();
+			}
+
+			// Skip an action that the JPA provider cannot perform:
+			if (!actions[0].isSupported()) {
+				System.out.println(actionName +
+					": skipped (not supported by the JPA provider)");
+				return true;
+			}
 
 			// Test the action:
-			runAction(actionClass);
+			if (batchCandidates != null) {
+				searchBatchSize(actionClass);
+			}
+			else {
+				runAction(actionClass);
+			}
 
 			// On success - return true:
 			return true;
@@ -353,6 +650,9 @@ public final class Runner {
 				catch (Exception e) {
 				}
 			}
+			if (pool != null) {
+				pool.close(); // refilled to pool-min by the next factory
+			}
 		}
 	}
 
@@ -369,6 +669,8 @@ public final class Runner {
 		long deadline = testStartTime + warmupTime;
 		runThreads(deadline, warmupObjectCount);
 		int warmupActionCount = test.getActionCount();
+		test.getMetrics().reset();
+		long warmupStatementCount = CountingDriver.getStatementCount();
 
 		// Run the real test:
 		testStartTime = System.nanoTime();
@@ -397,17 +699,257 @@ public final class Runner {
 		System.out.println(actionName + ": " +
 			FormatHelper.formatNumber(actionsPerSecond));
 		reportResult(Double.valueOf(actionsPerSecond), actionName);
+		reportMetrics(elapsedTime);
+		if (CountingDriver.isInUse() && actionCount > 0) {
+			double statementsPerAction = (double)(CountingDriver
+				.getStatementCount() - warmupStatementCount) / actionCount;
+			System.out.println(actionName + " SQL statements per operation: " +
+				FormatHelper.formatNumber(statementsPerAction));
+			reportResult(Double.valueOf(statementsPerAction),
+				actionName + "-Statements");
+		}
+		if (checkpoints != null && threadClass != PersistAction.class) {
+			addScalingPoint(actionName, actionsPerSecond);
+		}
+
+		// Check the visibility of bulk updates (e.g. cache invalidation):
+		if (threadClass == BulkUpdateAction.class) {
+			double staleRatio =
+				test.checkBulkUpdateVisibility(actions[0].em, 10);
+			System.out.println(actionName + " stale reads: " +
+				FormatHelper.formatNumber(100 * staleRatio) + "%");
+			reportResult(Double.valueOf(100 * staleRatio), actionName + "-Stale");
+		}
+
+		// Measure the memory that is held by the shared (L2) cache:
+		if (threadClass == WarmRetrieveAction.class) {
+			long cacheMemory = measureCacheMemory(actions[0].em);
+			System.out.println(actionName + " cache memory: " +
+				FormatHelper.formatInt(cacheMemory >> 10) + "KB");
+			reportResult(Long.valueOf(cacheMemory), actionName + "-CacheMemory");
+		}
+
+		// Complete the persist action:
+		if (threadClass == PersistAction.class) {
+			completePersist();
+		}
+	}
+
+	/**
+	 * Reports the additional measurements (if any) of the current action.
+	 *
+	 * @param elapsedTime the measured time in nanoseconds
+	 */
+	private void reportMetrics(long elapsedTime) {
+		for (Map.Entry<String, Double> entry :
+				test.getMetrics().getResults(elapsedTime).entrySet()) {
+			String name = actionName + '-' + entry.getKey();
+			System.out.println(name + ": " +
+				FormatHelper.formatNumber(entry.getValue().doubleValue()));
+			reportResult(entry.getValue(), name);
+		}
+	}
+
+	/**
+	 * Measures the heap memory that is held by the shared (L2) cache.
+	 *
+	 * @param em a connection to the test database
+	 * @return the heap usage difference before / after evicting the cache.
+	 */
+	private static long measureCacheMemory(EntityManager em) {
+		em.clear();
+		long usedWithCache = MemoryHelper.getUsedHeapAfterGc();
+		em.getEntityManagerFactory().getCache().evictAll();
+		long usedWithoutCache = MemoryHelper.getUsedHeapAfterGc();
+		return Math.max(usedWithCache - usedWithoutCache, 0);
+	}
+
+	/**
+	 * Completes the persist action by filling the database to its full size.
+	 */
+	private void completePersist() {
+		// All tests must be done on a database of the same size:
+		while (test.getActionCount() < totalObjectCount &&
+				test.getInventorySize() > 0) {
+			int batchSize = Math.min(20000,
+				totalObjectCount - test.getActionCount());
+			test.persist(actions[0].em, batchSize);
+		}
+		test.clearInventory();
+	}
+
+	//-------------------//
+	// Batch Size Search //
+	//-------------------//
+
+	/**
+	 * Searches the batch size that maximizes the throughput of an action
+	 * (under the latency ceiling, if specified).
+	 *
+	 * The candidates are probed in ascending order for a short time each,
+	 * until the latency ceiling is exceeded or the throughput declines
+	 * twice in a row. Persist candidates that would grow the database
+	 * beyond its total size are skipped. The geometric midpoints between
+	 * the best candidate and its neighbors are then probed to refine the
+	 * result.
+	 *
+	 * @param threadClass wraps a benchmark method (action)
+	 */
+	private void searchBatchSize(Class<? extends TestAction> threadClass)
+			throws Throwable {
+		// Warm up with the smallest batch size:
+		test.resetActionCount();
+		probeBatchSize(threadClass, batchCandidates[0], warmupTime);
+
+		// Probe the candidates in ascending order:
+		TreeMap<Integer, Double> probeResults = new TreeMap<Integer, Double>();
+		int declineCount = 0;
+		for (int batchSize : batchCandidates) {
+			double result =
+				probeBatchSize(threadClass, batchSize, probeTime);
+			if (Double.isNaN(result)) {
+				continue; // skipped (the database would grow too large)
+			}
+			if (result < 0) {
+				break; // latency ceiling exceeded
+			}
+			probeResults.put(Integer.valueOf(batchSize), Double.valueOf(result));
+			if (result < getBestResult(probeResults)) {
+				if (++declineCount == 2) {
+					break;
+				}
+			}
+			else {
+				declineCount = 0;
+			}
+		}
+		if (probeResults.isEmpty()) {
+			throw new RuntimeException(
+				"No batch size fits the database and the latency ceiling");
+		}
+
+		// Refine around the best candidate (geometric midpoints):
+		int bestBatchSize = getBestBatchSize(probeResults);
+		int bestIx = Arrays.binarySearch(batchCandidates, bestBatchSize);
+		for (int neighborIx = bestIx - 1; neighborIx <= bestIx + 1;
+				neighborIx += 2) {
+			if (neighborIx >= 0 && neighborIx < batchCandidates.length) {
+				int batchSize = (int)Math.round(Math.sqrt(
+					(double)bestBatchSize * batchCandidates[neighborIx]));
+				if (!probeResults.containsKey(Integer.valueOf(batchSize))) {
+					double result =
+						probeBatchSize(threadClass, batchSize, probeTime);
+					if (result >= 0) {
+						probeResults.put(
+							Integer.valueOf(batchSize), Double.valueOf(result));
+					}
+				}
+			}
+		}
+
+		// Report the optimal batch size and its throughput:
+		bestBatchSize = getBestBatchSize(probeResults);
+		double bestResult = getBestResult(probeResults);
+		test.setBatchSize(bestBatchSize);
+		System.out.println(actionName + ": " +
+			FormatHelper.formatNumber(bestResult) +
+			" (optimal batch size: " + bestBatchSize + ")");
+		reportResult(Double.valueOf(bestResult), actionName);
+		reportResult(Integer.valueOf(bestBatchSize), actionName + "-Batch");
 
 		// Complete the persist action:
 		if (threadClass == PersistAction.class) {
-			// All tests must be done on a database of the same size:
-			while (test.getActionCount() < totalObjectCount) {
-				int batchSize = Math.min(20000,
-					totalObjectCount - test.getActionCount());
-				test.persist(actions[0].em, batchSize);
+			completePersist();
+		}
+	}
+
+	/**
+	 * Runs an action for a short time with a specified batch size.
+	 *
+	 * @param threadClass wraps a benchmark method (action)
+	 * @param batchSize the batch size to probe
+	 * @param time the probe time in nanoseconds
+	 * @return actions per second (or -1 if the probe is not valid,
+	 *         or NaN if the batch size has been skipped).
+	 */
+	private double probeBatchSize(Class<? extends TestAction> threadClass,
+			int batchSize, long time) throws Throwable {
+		// Limit the persist action to the database size and the inventory
+		// (every thread may start a last transaction at the limit):
+		int startActionCount = test.getActionCount();
+		int maxObjectCount = Integer.MAX_VALUE;
+		if (threadClass == PersistAction.class) {
+			int objectLimit = Math.min(totalObjectCount, startActionCount +
+				test.getInventorySize() * test.getGraphSize());
+			maxObjectCount = objectLimit - actions.length * batchSize + 1;
+			if (maxObjectCount <= startActionCount) {
+				System.out.println("Batch size " + batchSize + ": skipped (" +
+					(objectLimit - startActionCount) +
+					" objects left to persist)");
+				return Double.NaN;
+			}
+		}
+
+		// Run the action:
+		test.setBatchSize(batchSize);
+		int startTransactionCount = 0;
+		for (TestAction action : actions) {
+			startTransactionCount += action.transactionCount;
+		}
+		long startTime = System.nanoTime();
+		runThreads(startTime + time, maxObjectCount);
+		long elapsedTime = System.nanoTime() - startTime;
+
+		// Calculate the throughput and the average transaction latency:
+		int transactionCount = -startTransactionCount;
+		for (TestAction action : actions) {
+			transactionCount += action.transactionCount;
+		}
+		if (transactionCount == 0) {
+			return -1;
+		}
+		int actionCount = test.getActionCount() - startActionCount;
+		double actionsPerSecond =
+			(double)actionCount * NANO_PER_SEC / elapsedTime;
+		double latency = (double)elapsedTime * actions.length /
+			transactionCount / 1000000;
+		System.out.println("Batch size " + batchSize + ": " +
+			FormatHelper.formatNumber(actionsPerSecond) + " per second, " +
+			FormatHelper.formatNumber(latency) + " ms per transaction");
+		return (latencyCeiling > 0 && latency > latencyCeiling) ?
+			-1 : actionsPerSecond;
+	}
+
+	/**
+	 * Gets the batch size with the highest probe result.
+	 *
+	 * @param probeResults probe results (batch size to actions per second)
+	 * @return the batch size with the highest probe result.
+	 */
+	private static int getBestBatchSize(Map<Integer, Double> probeResults) {
+		int bestBatchSize = 0;
+		double bestResult = -1;
+		for (Map.Entry<Integer, Double> entry : probeResults.entrySet()) {
+			if (entry.getValue().doubleValue() > bestResult) {
+				bestResult = entry.getValue().doubleValue();
+				bestBatchSize = entry.getKey().intValue();
 			}
-			test.clearInventory();
 		}
+		return bestBatchSize;
+	}
+
+	/**
+	 * Gets the highest probe result.
+	 *
+	 * @param probeResults probe results (batch size to actions per second)
+	 * @return the highest probe result (actions per second).
+	 */
+	private static double getBestResult(Map<Integer, Double> probeResults) {
+		double bestResult = -1;
+		for (Double result : probeResults.values()) {
+			bestResult = Math.max(bestResult, result.doubleValue());
+		}
+		return bestResult;
 	}
 
 	/**
@@ -452,11 +994,12 @@ public final class Runner {
 	 */
 	private void reportResult(Object result) {
 		reportResult(result, "Persist");
-		reportResult(result, "Retrieve");
-		reportResult(result, "Update");
-		reportResult(result, "Remove");
-		if (test.hasQueries()) {
-			reportResult(result, "Query");
+		if (batchCandidates != null) {
+			reportResult(result, "Update");
+			return; // batch size search mode
+		}
+		for (Class<? extends TestAction> actionClass : actionClasses) {
+			reportResult(result, getActionName(actionClass));
 		}
 		reportResult(result, "Space");
 	}
@@ -502,9 +1045,27 @@ public final class Runner {
 		/** Deadline for all actions (a System.naonTime value) */
 		long deadline;
 
+		/** Number of transactions / retrievals performed by this thread */
+		int transactionCount;
+
 		/** Exception that has been thrown from the thread */
 		Throwable exception;
 
+		/**
+		 * Prepares the action (before the warm up).
+		 */
+		void prepare() {
+		}
+
+		/**
+		 * Checks if the JPA provider can perform the action.
+		 *
+		 * @return true - if the action is supported; false - if not.
+		 */
+		boolean isSupported() {
+			return true;
+		}
+
 		/**
 		 * Run wrapper.
 		 */
@@ -532,6 +1093,7 @@ public final class Runner {
 			while (test.getActionCount() < maxEntityCount
 					&& System.nanoTime() < deadline) {
 				test.persist(em);
+				transactionCount++;
 			}
 		}
 	}
@@ -544,6 +1106,7 @@ public final class Runner {
 		public void run0() {
 			while (System.nanoTime() < deadline) {
 				test.doAction(em, Test.ActionType.RETRIEVE);
+				transactionCount++;
 			}
 		}
 	}
@@ -556,6 +1119,7 @@ public final class Runner {
 		public void run0() {
 			while (System.nanoTime() < deadline) {
 				test.query(em);
+				transactionCount++;
 			}
 		}
 	}
@@ -568,6 +1132,7 @@ public final class Runner {
 		public void run0() {
 			while (System.nanoTime() < deadline) {
 				test.doAction(em, Test.ActionType.UPDATE);
+				transactionCount++;
 			}
 		}
 	}
@@ -581,6 +1146,420 @@ public final class Runner {
 			while (test.getActionCount() < maxEntityCount
 					&& System.nanoTime() < deadline) {
 				test.doAction(em, Test.ActionType.DELETE);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the bulk update action (JPQL UPDATE).
+	 */
+	static class BulkUpdateAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.doBulkAction(em, Test.ActionType.UPDATE);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the bulk remove action (JPQL DELETE).
+	 */
+	static class BulkRemoveAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			// At least half of the objects are left for the remove action:
+			while (test.getActionCount() < maxEntityCount / 2
+					&& System.nanoTime() < deadline) {
+				if (test.doBulkAction(em, Test.ActionType.DELETE) < 0) {
+					break; // no more objects to remove
+				}
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the find (by primary key) action.
+	 */
+	static class FindAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.lookup(em, Test.LookupType.FIND);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the get reference (by primary key) action.
+	 */
+	static class ReferenceAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.lookup(em, Test.LookupType.REFERENCE);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the multi id (IN) query action.
+	 */
+	static class MultiFindAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.lookup(em, Test.LookupType.MULTI_FIND);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the retrieve action with a cold shared (L2) cache.
+	 */
+	static class ColdRetrieveAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.cacheRetrieve(em, Test.AccessType.COLD);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the retrieve action with a warm shared (L2) cache.
+	 */
+	static class WarmRetrieveAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.cacheRetrieve(em, Test.AccessType.WARM);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the retrieve action with skewed (80/20) access.
+	 */
+	static class SkewedRetrieveAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.cacheRetrieve(em, Test.AccessType.SKEWED);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the full table scan action with keyset pagination.
+	 */
+	static class KeysetScanAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.scan(em, Test.ScanType.KEYSET, deadline);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the full table scan action with offset pagination.
+	 */
+	static class OffsetScanAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.scan(em, Test.ScanType.OFFSET, deadline);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the full table scan action with a streamed result.
+	 */
+	static class StreamScanAction extends TestAction {
+		@Override
+		boolean isSupported() {
+			return test.supportsStreamScan(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.scan(em, Test.ScanType.STREAM, deadline);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action at several selectivity points.
+	 */
+	static class SelectivityQueryAction extends TestAction {
+		@Override
+		void prepare() {
+			test.prepareSelectivityQuery(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.selectivityQuery(em);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action that selects a projection (3 fields).
+	 */
+	static class ProjectionQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.query(em, Test.SelectType.PROJECTION);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action that selects DTOs (SELECT NEW).
+	 */
+	static class DtoQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.query(em, Test.SelectType.DTO);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action with a repeated parameterized query string.
+	 */
+	static class RepeatedQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.planCacheQuery(em, Test.PlanCacheType.REPEATED);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action with unique query strings with inlined literals.
+	 */
+	static class InlinedQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.planCacheQuery(em, Test.PlanCacheType.INLINED);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the query action with a rotating set of distinct query strings.
+	 */
+	static class RotatingQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.planCacheQuery(em, Test.PlanCacheType.ROTATING);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the aggregate query action (COUNT with a WHERE filter).
+	 */
+	static class CountQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.aggregateQuery(em, Test.AggregateType.COUNT);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the aggregate query action (AVG grouped by state).
+	 */
+	static class StateAvgQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.aggregateQuery(em, Test.AggregateType.STATE_AVG);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the aggregate query action (AVG grouped by country).
+	 */
+	static class CountryAvgQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.aggregateQuery(em, Test.AggregateType.COUNTRY_AVG);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the aggregate query action (MIN / MAX of a date).
+	 */
+	static class MinMaxQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.aggregateQuery(em, Test.AggregateType.MIN_MAX);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the aggregate query action (GROUP BY with a HAVING filter).
+	 */
+	static class HavingQueryAction extends TestAction {
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.aggregateQuery(em, Test.AggregateType.HAVING);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the multi id (IN) query action with JOIN FETCH.
+	 */
+	static class JoinFetchAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.lookup(em, Test.LookupType.JOIN_FETCH);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the update action on a contended hot set.
+	 */
+	static class ContendedUpdateAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.contendedUpdate(em);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the update action with pessimistic locks.
+	 */
+	static class LockedUpdateAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.lockedUpdate(em);
+				transactionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the merge (of detached entity objects) action.
+	 */
+	static class MergeAction extends TestAction {
+		@Override
+		void prepare() {
+			test.loadIdRange(em);
+			test.loadMergePool(em);
+		}
+
+		@Override
+		public void run0() {
+			while (System.nanoTime() < deadline) {
+				test.merge(em);
+				transactionCount++;
 			}
 		}
 	}
@@ -22,6 +22,7 @@ package org.jpab;
 import java.util.*;
 import java.util.concurrent.atomic.*;
 import javax.persistence.*;
+import javax.persistence.criteria.*;
 
 
 /**
@@ -38,6 +39,80 @@ public abstract class Test {
 		RETRIEVE, UPDATE, DELETE 
 	}
 
+	/** Lookup types (by primary key) for the lookup function */
+	protected enum LookupType {
+		FIND, REFERENCE, MULTI_FIND, JOIN_FETCH
+	}
+
+	/** Access patterns for the cacheRetrieve function */
+	protected enum AccessType {
+		COLD, WARM, SKEWED
+	}
+
+	/** Query result types (what is selected) for the query function */
+	protected enum SelectType {
+		ENTITY, PROJECTION, DTO
+	}
+
+	/** Aggregate query types for the aggregateQuery function */
+	protected enum AggregateType {
+		COUNT, STATE_AVG, COUNTRY_AVG, MIN_MAX, HAVING
+	}
+
+	/** Full table walk methods for the scan function */
+	protected enum ScanType {
+		KEYSET, OFFSET, STREAM
+	}
+
+	/** Query string patterns for the planCacheQuery function */
+	protected enum PlanCacheType {
+		REPEATED, INLINED, ROTATING
+	}
+
+	/** Ways to build the prefix and id range queries ("query-api") */
+	protected enum QueryApi {
+		JPQL, NAMED, CRITERIA, NATIVE
+	}
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Percentage of the objects in the hot set (for skewed access) */
+	private static final int HOT_SET_PERCENT = 20;
+
+	/** Percentage of accesses to the hot set (for skewed access) */
+	private static final int HOT_ACCESS_PERCENT = 80;
+
+	/** Default number of objects that are updated by contended updates */
+	private static final int DEFAULT_HOT_SET_SIZE = 100;
+
+	/** Default number of detached entity objects (graphs) for merge */
+	private static final int DEFAULT_MERGE_POOL_SIZE = 1000;
+
+	/** Number of possible values of the state field (2 letters) */
+	private static final int STATE_COUNT = 26 * 26;
+
+	/** Default number of distinct query strings of a rotating query */
+	private static final int DEFAULT_ROTATING_QUERY_COUNT = 10000;
+
+	/** Number of random last name ranges per selectivity point */
+	private static final int SELECTIVITY_RANGE_COUNT = 10;
+
+	/** Name of the last name prefix query (in the generated mapping file) */
+	static final String PREFIX_QUERY_NAME = "jpab.prefix";
+
+	/** Name of the id range query (in the generated mapping file) */
+	static final String RANGE_QUERY_NAME = "jpab.range";
+
+	/** Query interfaces of Hibernate (5.2+ and older) for a result scroll */
+	private static final String[] HIBERNATE_QUERY_CLASS_NAMES =
+		{ "org.hibernate.query.Query", "org.hibernate.Query" };
+
+	/** Query interface of EclipseLink for a result cursor */
+	private static final String ECLIPSELINK_QUERY_CLASS_NAME =
+		"org.eclipse.persistence.jpa.JpaQuery";
+
 	//--------------//
 	// Data Members //
 	//--------------//
@@ -54,9 +129,50 @@ public abstract class Test {
 	/** Count the number of actions performed during a run */
 	private final AtomicInteger actionCount = new AtomicInteger();
 
+	/** Additional measurements of the current action (e.g. latency) */
+	private final Metrics metrics = new Metrics();
+
 	/** Inventory of ready to use entity objects for persist */
 	private final Stack<TestEntity> entityInventory = new Stack<TestEntity>();
 
+	/** Lowest entity object id in the database (set by loadIdRange) */
+	private volatile int minId;
+
+	/** Highest entity object id in the database (set by loadIdRange) */
+	private volatile int maxId;
+
+	/** Next id to remove by the bulk remove action */
+	private final AtomicInteger nextBulkRemoveId = new AtomicInteger();
+
+	/** The test code (e.g. "test1a") - for test specific properties */
+	private String testCode;
+
+	/** The API that builds the prefix and id range queries */
+	private QueryApi queryApi = QueryApi.JPQL;
+
+	/** Counter for selecting the next rotating query string */
+	private final AtomicLong queryStringCounter = new AtomicLong();
+
+	/** Inlined patterns of the rotating query strings (built on first use) */
+	private String[] rotatingPatterns;
+
+	/** Number of persisted entities between flush/clear (0 - at commit) */
+	private int flushInterval;
+
+	/** Result sizes (in rows) of the selectivity query (null - default) */
+	private int[] selectivity;
+
+	/** Last name range bounds (first, last, ...) per selectivity point */
+	private String[][] selectivityRanges;
+
+	/** Detached entity objects (graphs) that are merged by merge */
+	private final Queue<TestEntity> mergePool =
+		new java.util.concurrent.ConcurrentLinkedQueue<TestEntity>();
+
+	/** Ids that have been seen in the shared cache (for counting evictions) */
+	private final Map<Object, Boolean> cachedIdMap =
+		new java.util.concurrent.ConcurrentHashMap<Object, Boolean>();
+
 	//--------------//
 	// Construction //
 	//--------------//
@@ -76,10 +192,75 @@ public abstract class Test {
 	/**
 	 * Gets the test name.
 	 * 
-	 * @return the short name of the test class.
+	 * @return the short name of the test class (with its variant, if any).
 	 */
 	public final String getName() {
-		return FormatHelper.getShortClassName(getClass());
+		return (testCode != null) ? ConfigHelper.getTestName(testCode) :
+			FormatHelper.getShortClassName(getClass());
+	}
+
+	/**
+	 * Gets the actions that follow persist if the test code has no actions.
+	 *
+	 * @return comma separated action names (see Runner action wrappers).
+	 */
+	public String getDefaultActions() {
+		return "Retrieve,Query,Update,Remove"; // overridden by special tests
+	}
+
+	// Test Code:
+
+	/**
+	 * Constructs the test instance of a specified test code.
+	 * 
+	 * @param testCode the test code (e.g. "test1a")
+	 * @return the new test instance (with its test code set).
+	 */
+	static Test newInstance(String testCode) {
+		String className = ConfigHelper.getProperty(testCode + "-class");
+		try {
+			Test test = (Test)Class.forName(className).newInstance();
+			test.setTestCode(testCode);
+			return test;
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to construct test " + className, e);
+		}
+	}
+
+	/**
+	 * Sets the test code (for reading test specific properties).
+	 * 
+	 * @param testCode the test code (e.g. "test1a")
+	 */
+	public void setTestCode(String testCode) {
+		this.testCode = testCode;
+		flushInterval = getIntProperty("flush-interval", 0);
+		String api = getProperty("query-api");
+		if (api != null) {
+			queryApi = QueryApi.valueOf(api.trim());
+		}
+	}
+
+	/**
+	 * Gets a value of a test specific benchmark property.
+	 * 
+	 * @param name the property name (without the test code prefix)
+	 * @return the property value (or null if missing).
+	 */
+	protected final String getProperty(String name) {
+		return ConfigHelper.getProperty(testCode + '-' + name);
+	}
+
+	/**
+	 * Gets a value of an optional test specific benchmark int property.
+	 * 
+	 * @param name the property name (without the test code prefix)
+	 * @param defaultValue the value to return if the property is missing
+	 * @return the property value.
+	 */
+	protected final int getIntProperty(String name, int defaultValue) {
+		return ConfigHelper.getIntProperty(testCode + '-' + name, defaultValue);
 	}
 	
 	// Thread Count:
@@ -133,6 +314,17 @@ public abstract class Test {
 		this.entityCount = entityCount;
 	}
 
+	// Selectivity:
+
+	/**
+	 * Sets the result sizes (in rows) of the selectivity query.
+	 * 
+	 * @param selectivity the result sizes in ascending order
+	 */
+	public void setSelectivity(int[] selectivity) {
+		this.selectivity = selectivity;
+	}
+
 	// Action Count:
 
 	/**
@@ -160,6 +352,17 @@ public abstract class Test {
 		return actionCount.get();
 	}
 
+	// Metrics:
+
+	/**
+	 * Gets additional measurements of the current action.
+	 * 
+	 * @return the metrics of the current action.
+	 */
+	public final Metrics getMetrics() {
+		return metrics;
+	}
+
 	//-----------//
 	// Inventory //
 	//-----------//
@@ -170,12 +373,22 @@ public abstract class Test {
 	 * @param entityCount size of the inventory (in objects) 
 	 */
 	public void buildInventory(int entityCount) {
+		buildInventory(entityInventory, entityCount);
+		//Collections.reverse(entityInventory); // LIFO to FIFO
+	}
+
+	/**
+	 * Adds new entity objects to a separate (e.g. per thread) inventory.
+	 * 
+	 * @param inventory the inventory to fill
+	 * @param entityCount number of objects to add
+	 */
+	final void buildInventory(Stack<TestEntity> inventory, int entityCount) {
 		entityCount /= getGraphSize();
-		entityInventory.ensureCapacity(entityCount);
+		inventory.ensureCapacity(inventory.size() + entityCount);
 		while (entityCount-- > 0) {
-			entityInventory.add(newEntity());
+			inventory.add(newEntity());
 		}
-		//Collections.reverse(entityInventory); // LIFO to FIFO
 	}
 
 	/**
@@ -185,6 +398,15 @@ public abstract class Test {
 		entityInventory.clear();
 	}
 
+	/**
+	 * Gets the number of ready to use inventory entity objects (graphs).
+	 *
+	 * @return the number of ready to use inventory entity objects (graphs).
+	 */
+	final int getInventorySize() {
+		return entityInventory.size();
+	}
+
 	//--------------//
 	// Test Actions //
 	//--------------//
@@ -202,23 +424,56 @@ public abstract class Test {
 
 	/**
 	 * Persists a batch of entity objects.
+	 *
+	 * With test property "flush-interval" (K), the persistence context is
+	 * flushed and cleared every K entities and the peak heap is reported.
 	 * 
 	 * @param em a connection to the test database
+	 * @param batchSize maximum number of objects to persist
 	 */
 	final void persist(EntityManager em, int batchSize) {
+		persist(em, batchSize, entityInventory);
+	}
+
+	/**
+	 * Persists a batch of entity objects from a specified inventory.
+	 * 
+	 * @param em a connection to the test database
+	 * @param batchSize maximum number of objects to persist
+	 * @param inventory the source of the new entity objects
+	 */
+	final void persist(EntityManager em, int batchSize,
+			Stack<TestEntity> inventory) {
 		try {
+			long allocatedBefore = MemoryHelper.getAllocatedBytes();
 			em.getTransaction().begin();
 			int graphSize = getGraphSize(); // > 1 only in NodeTest
 			int operCount = batchSize / graphSize;
-			for (int i = 0; i < operCount && !entityInventory.isEmpty(); i++) {
-				em.persist(entityInventory.pop());
+			int persistedCount = 0;
+			int unflushedCount = 0;
+			for (int i = 0; i < operCount && !inventory.isEmpty(); i++) {
+				persistEntity(em, inventory.pop());
 				increaseActionCount(graphSize);
+				persistedCount += graphSize;
+				unflushedCount += graphSize;
+				if (flushInterval > 0 && unflushedCount >= flushInterval) {
+					// Keep the persistence context small (bulk import):
+					metrics.peak("PeakHeap", MemoryHelper.getUsedHeap());
+					em.flush();
+					em.clear();
+					unflushedCount = 0;
+				}
+			}
+			if (flushInterval > 0) {
+				metrics.peak("PeakHeap", MemoryHelper.getUsedHeap());
 			}
 			em.getTransaction().commit();
+			recordPayload(allocatedBefore, persistedCount);
 		}
 		catch (RuntimeException e) {
 			if (!isLockException(e))
 				throw e; // ignore optimistic lock exceptions
+			metrics.count("LockFailures", 1); // but report them
 		}
 		finally {
 			if (em.getTransaction().isActive()) {
@@ -235,8 +490,10 @@ public abstract class Test {
 	 * 
 	 * @param em a connection to the test database
 	 * @param action one of RETRIEVE, UPDATE or DELETE
+	 * @return the entity objects of the action (detached).
 	 */
-	public final void doAction(EntityManager em, ActionType action) {
+	public final List<TestEntity> doAction(EntityManager em, ActionType action) {
+		List<TestEntity> entityList = Collections.emptyList();
 		try {
 			// Begin a transaction:
 			if (action != ActionType.RETRIEVE) {
@@ -244,11 +501,11 @@ public abstract class Test {
 			}
 
 			// Retrieve a batch of entity objects:
+			long allocatedBefore = MemoryHelper.getAllocatedBytes();
 			int graphSize = getGraphSize();
 			int graphCount = batchSize / graphSize;
 			boolean isRandom = action != ActionType.DELETE;
-			List<TestEntity> entityList =
-				retireveEntities(em, graphCount, isRandom);
+			entityList = retireveEntities(em, graphCount, isRandom);
 
 			// Repeat the action on all the entity objects: 
 			for (TestEntity entity : entityList) {
@@ -257,7 +514,7 @@ public abstract class Test {
 						entity.load();
 						break;
 					case UPDATE:
-						entity.update();
+						updateEntity(em, entity);
 						break;
 					case DELETE:
 						em.remove(entity);
@@ -271,10 +528,14 @@ public abstract class Test {
 			if (action != ActionType.RETRIEVE) {
 				em.getTransaction().commit();
 			}
+			else {
+				recordPayload(allocatedBefore, entityList.size() * graphSize);
+			}
 		}
 		catch (RuntimeException e) {
 			if (!isLockException(e))
 				throw e; // ignore optimistic lock exceptions
+			metrics.count("LockFailures", 1); // but report them
 		}
 		finally {
 			if (em.getTransaction().isActive()) {
@@ -282,109 +543,1296 @@ public abstract class Test {
 			}
 			em.clear();
 		}
+		return entityList;
 	}
 
-	// Query:
+	// Lookup by Primary Key:
 
 	/**
-	 * Checks if this test includes queries.
+	 * Retrieves a batch of random entity objects by their primary keys.
 	 * 
-	 * @return true - if it includes queries; false - if not.
+	 * @param em a connection to the test database
+	 * @param lookup one of FIND, REFERENCE, MULTI_FIND or JOIN_FETCH
 	 */
-	public boolean hasQueries() {
-		return true; // overridden by tests with no queries 
+	public final void lookup(EntityManager em, LookupType lookup) {
+		try {
+			em.getTransaction().begin();
+			int graphSize = getGraphSize();
+			List<Object> idList = randomIds(Math.max(batchSize / graphSize, 1));
+			int foundCount = 0;
+			if (lookup == LookupType.MULTI_FIND ||
+					lookup == LookupType.JOIN_FETCH) {
+				// Retrieve all the entity objects by a single query:
+				long startTime = System.nanoTime();
+				Query query = (lookup == LookupType.MULTI_FIND) ?
+					em.createQuery("SELECT o FROM " +
+						getEntityName() + " o WHERE o.id IN (:ids)") :
+					em.createQuery("SELECT DISTINCT o FROM " + getEntityName() +
+						" o" + getFetchJoins() + " WHERE o.id IN (:ids)");
+				query.setParameter("ids", idList);
+				for (Object entity : query.getResultList()) {
+					((TestEntity)entity).load();
+					foundCount++;
+				}
+				metrics.latency("Latency", System.nanoTime() - startTime);
+			}
+			else {
+				// Retrieve the entity objects one by one:
+				for (Object id : idList) {
+					long startTime = System.nanoTime();
+					try {
+						// getReference may also throw for a missing id:
+						TestEntity entity = (TestEntity)(
+							(lookup == LookupType.FIND) ?
+								em.find(getEntityClass(), id) :
+								em.getReference(getEntityClass(), id));
+						if (entity != null) {
+							entity.load(); // also initializes a reference
+							foundCount++;
+						}
+					}
+					catch (EntityNotFoundException e) {
+						// a reference to a missing id (in a gap)
+					}
+					metrics.latency("Latency", System.nanoTime() - startTime);
+				}
+			}
+			increaseActionCount(foundCount * graphSize);
+			em.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			if (!isLockException(e))
+				throw e; // ignore optimistic lock exceptions
+			metrics.count("LockFailures", 1); // but report them
+		}
+		finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.clear();
+		}
 	}
 
-    /**
-     * Executes a query.
-     * 
-     * @param em a connection to the test database
-     */
-    public void query(EntityManager em) {
-    	// Prepare a target last name prefix:
-    	int prefixLength = 1; // depends on batch size
-    	for (int count = entityCount; (count /= 26) > batchSize; ) {
-    		prefixLength++;
-    	}
-    	String prefix = Randomizer.randomString(prefixLength, prefixLength + 1);
-
-    	// Execute the query:
-        Query query = em.createQuery("SELECT o FROM " +
-        	getEntityName() + " o WHERE o.lastName LIKE :pattern");
-        query.setParameter("pattern", prefix + "%");
-        List<TestEntity> results = query.getResultList();
+	// Contended Update (Optimistic Locking):
 
-        // Load the results (expected to be already loaded):
-        for (TestEntity entity : results) {
-			entity.load();
-        }
-        increaseActionCount(1);
-        em.clear();
-    }
+	/**
+	 * Updates a batch of random entity objects from a small hot set,
+	 * with optional retries (and backoff) on optimistic lock conflicts.
+	 * 
+	 * Test specific properties: hot-set (number of objects), retries
+	 * (maximum retries per transaction) and backoff (initial maximum
+	 * backoff in milliseconds, doubled on every retry).
+	 * 
+	 * @param em a connection to the test database
+	 */
+	public final void contendedUpdate(EntityManager em) {
+		int hotSetSize = getIntProperty("hot-set", DEFAULT_HOT_SET_SIZE);
+		int maxRetries = getIntProperty("retries", 0);
+		int backoff = getIntProperty("backoff", 0);
+		int hotMaxId = Math.min(minId + hotSetSize - 1, maxId);
+		List<Object> idList = randomIds(
+			Math.min(batchSize, hotSetSize), minId, hotMaxId);
+		for (int attempt = 0; ; attempt++) {
+			// Try to update the entity objects:
+			metrics.count("Attempted", idList.size());
+			boolean isCommitted = false;
+			try {
+				em.getTransaction().begin();
+				for (Object id : idList) {
+					TestEntity entity =
+						(TestEntity)em.find(getEntityClass(), id);
+					if (entity != null) {
+						entity.update();
+					}
+				}
+				em.getTransaction().commit();
+				isCommitted = true;
+			}
+			catch (RuntimeException e) {
+				if (!isLockException(e))
+					throw e;
+				metrics.count("Conflicts", 1);
+			}
+			finally {
+				if (em.getTransaction().isActive()) {
+					em.getTransaction().rollback();
+				}
+				em.clear();
+			}
+			metrics.ratio("Success", isCommitted);
+			if (isCommitted) {
+				increaseActionCount(idList.size()); // goodput
+				return;
+			}
 
-	//------------------------//
-	// Implementation Methods //
-	//------------------------//
+			// Give up or retry (after a random exponential backoff):
+			if (attempt >= maxRetries) {
+				metrics.count("Wasted", 1);
+				return;
+			}
+			metrics.count("Retries", 1);
+			if (backoff > 0) {
+				try {
+					Thread.sleep(Randomizer.randomInt(
+						0, backoff << Math.min(attempt, 16)));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
 
-	// Test Details:
+	// Pessimistic Locking:
 
 	/**
-	 * Gets the type of the test main entity class.
+	 * Updates a batch of random entity objects from a hot set after
+	 * locking them pessimistically (SELECT ... FOR UPDATE).
 	 * 
-	 * @return the type of the test main entity class.
+	 * Test specific properties: hot-set (number of objects) and
+	 * lock-timeout (in milliseconds, default - the DBMS default).
+	 * 
+	 * @param em a connection to the test database
 	 */
-	protected abstract Class getEntityClass();
+	public final void lockedUpdate(EntityManager em) {
+		int hotSetSize = getIntProperty("hot-set", DEFAULT_HOT_SET_SIZE);
+		int hotMaxId = Math.min(minId + hotSetSize - 1, maxId);
+		List<Object> idList = randomIds(
+			Math.min(batchSize, hotSetSize), minId, hotMaxId);
+		Map<String, Object> hints = new HashMap<String, Object>();
+		String lockTimeout = getProperty("lock-timeout");
+		if (lockTimeout != null) {
+			hints.put("javax.persistence.lock.timeout",
+				Integer.valueOf(lockTimeout.trim()));
+		}
+		try {
+			em.getTransaction().begin();
+			for (Object id : idList) {
+				TestEntity entity;
+				long startTime = System.nanoTime();
+				try {
+					entity = (TestEntity)em.find(getEntityClass(),
+						id, LockModeType.PESSIMISTIC_WRITE, hints);
+				}
+				finally {
+					// Failed waits (timeouts, deadlocks) are included:
+					metrics.latency("LockWait", System.nanoTime() - startTime);
+				}
+				if (entity != null) {
+					entity.update();
+				}
+			}
+			em.getTransaction().commit();
+			increaseActionCount(idList.size());
+		}
+		catch (RuntimeException e) {
+			if (!isLockException(e))
+				throw e;
+			metrics.count(isDeadlockException(e) ? "Deadlocks" :
+				isTimeoutException(e) ? "Timeouts" : "LockFailures", 1);
+		}
+		finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.clear();
+		}
+	}
+
+	// Detached Merge:
 
 	/**
-	 * Gets the unqualified name of the test main entity class.
+	 * Loads a pool of detached entity objects (graphs) for merge.
+	 * The pool size is set by test property "merge-pool" (at least one
+	 * batch per thread, so that threads never merge the same objects).
 	 * 
-	 * @return the unqualified name of the test main entity class.
+	 * @param em a connection to the test database
 	 */
-	public final String getEntityName() {
-		return FormatHelper.getShortClassName(getEntityClass());
+	public final synchronized void loadMergePool(EntityManager em) {
+		if (mergePool.isEmpty()) {
+			int graphCount = batchSize / getGraphSize();
+			int poolSize = Math.max(graphCount * threadCount,
+				getIntProperty("merge-pool", DEFAULT_MERGE_POOL_SIZE));
+			for (Object id : randomIds(poolSize)) {
+				TestEntity entity = (TestEntity)em.find(getEntityClass(), id);
+				if (entity != null) {
+					entity.load(); // the full graph is shipped to the client
+					mergePool.add(entity);
+				}
+			}
+			em.clear(); // detach the pool
+		}
 	}
 
 	/**
-	 * Gets the number of reachable objects from every root entity object.
+	 * Mutates a batch of detached entity objects (outside the EntityManager)
+	 * and merges them back, in one transaction (as a web tier does).
 	 * 
-	 * @return the number of reachable objects from every root entity object.
+	 * @param em a connection to the test database
 	 */
-	protected int getGraphSize() {
-		return 1; // overridden by NodeTest
+	public final void merge(EntityManager em) {
+		// Take a batch of detached entity objects (graphs) from the pool:
+		int graphSize = getGraphSize();
+		int graphCount = batchSize / graphSize;
+		List<TestEntity> entityList = new ArrayList<TestEntity>(graphCount);
+		for (TestEntity entity; entityList.size() < graphCount &&
+				(entity = mergePool.poll()) != null; ) {
+			entityList.add(entity);
+		}
+
+		// Mutate the detached objects (as a client does):
+		for (TestEntity entity : entityList) {
+			entity.update();
+		}
+
+		// Merge them back (cascaded to graphs) and keep the new copies:
+		List<TestEntity> mergedList = entityList;
+		try {
+			em.getTransaction().begin();
+			List<TestEntity> managedList =
+				new ArrayList<TestEntity>(entityList.size());
+			for (TestEntity entity : entityList) {
+				managedList.add(em.merge(entity));
+			}
+			em.getTransaction().commit();
+			increaseActionCount(entityList.size() * graphSize);
+			mergedList = managedList; // with updated versions (if any)
+		}
+		catch (RuntimeException e) {
+			if (!isLockException(e))
+				throw e; // ignore optimistic lock exceptions
+			metrics.count("LockFailures", 1); // but report them
+		}
+		finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.clear();
+			mergePool.addAll(mergedList);
+		}
 	}
 
-	// Entity Operations:
+	// Shared (Second Level) Cache:
 
 	/**
-	 * Creates a new entity object (graph) for storing in the database.
+	 * Retrieves a batch of random entity objects by their primary keys
+	 * while measuring the shared (second level) cache effectiveness.
 	 * 
-	 * @return the new constructed entity object.
+	 * @param em a connection to the test database
+	 * @param access one of COLD (evict all first), WARM or SKEWED
 	 */
-	protected abstract TestEntity newEntity();
+	public final void cacheRetrieve(EntityManager em, AccessType access) {
+		try {
+			Cache cache = em.getEntityManagerFactory().getCache();
+			if (access == AccessType.COLD) {
+				cache.evictAll();
+				cachedIdMap.clear();
+			}
+			int graphSize = getGraphSize();
+			int foundCount = 0;
+			for (int i = Math.max(batchSize / graphSize, 1); i-- > 0; ) {
+				// Check if the entity object is expected to be cached:
+				Object id = (access == AccessType.SKEWED) ?
+					randomSkewedId() : randomId(minId, maxId);
+				boolean isCached = cache.contains(getEntityClass(), id);
+				if (!isCached && cachedIdMap.remove(id) != null) {
+					metrics.count("Evictions", 1); // cached before
+				}
+
+				// Retrieve the entity object:
+				long startTime = System.nanoTime();
+				TestEntity entity =
+					(TestEntity)em.find(getEntityClass(), id);
+				if (entity != null) {
+					entity.load();
+					foundCount++;
+					metrics.ratio("HitRatio", isCached);
+					if (cache.contains(getEntityClass(), id)) {
+						cachedIdMap.put(id, Boolean.TRUE);
+					}
+				}
+				metrics.latency("Latency", System.nanoTime() - startTime);
+			}
+			increaseActionCount(foundCount * graphSize);
+		}
+		finally {
+			em.clear();
+		}
+	}
+
+	// Bulk Update & Remove:
 
 	/**
-	 * Retrieves entity object roots.
-	 * 
-	 * @param em a connection to the database
-	 * @param count number of requested entity object roots
-	 * @param isRandom true - for random retrieval; false - for first returned 
-	 * @param the entity object roots.
+	 * Loads the range of entity object ids in the database
+	 * (required by actions that access entity objects by id).
+	 *
+	 * @param em a connection to the test database
 	 */
-	@SuppressWarnings("boxing")
-	protected List retireveEntities(
-			EntityManager em, int count, boolean isRandom) {
-		int maxFirstId = Math.max(entityCount - count, 1);
-		int firstId = Randomizer.randomInt(1, maxFirstId);
-		Query query = em.createQuery(
-			"SELECT o FROM " + getEntityName() + " o WHERE o.id >= :firstId"); 
-		query.setParameter("firstId", firstId);
-		query.setMaxResults(count);
-		return query.getResultList();
+	public final void loadIdRange(EntityManager em) {
+		Query query = em.createQuery("SELECT MIN(o.id), MAX(o.id) FROM " +
+			getEntityName() + " o");
+		Object[] range = (Object[])query.getSingleResult();
+		if (range[0] != null) {
+			minId = ((Number)range[0]).intValue();
+			maxId = ((Number)range[1]).intValue();
+		}
+		nextBulkRemoveId.set(minId);
+		em.clear();
 	}
 
-	//----------------//
-	// Helper Methods //
-	//----------------//
+	/**
+	 * Checks if the entity objects of this test can be removed by JPQL DELETE.
+	 * Bulk DELETE does not cascade, so tests with dependent rows (element
+	 * collections, relationships) cannot run the BulkRemove action.
+	 *
+	 * @return true - if bulk remove is supported; false - if not.
+	 */
+	public boolean supportsBulkRemove() {
+		return true; // overridden by tests with dependent tables
+	}
+
+	/**
+	 * Checks if the JPA provider can walk a query result with a forward only
+	 * cursor (Hibernate scroll or EclipseLink cursor), as the StreamScan
+	 * action requires.
+	 *
+	 * @param em a connection to the test database
+	 * @return true - if a result cursor is supported; false - if not.
+	 */
+	public final boolean supportsStreamScan(EntityManager em) {
+		return getProviderQueryClass(em.createQuery(
+			"SELECT o FROM " + getEntityName() + " o")) != null;
+	}
+
+	/**
+	 * Performs a bulk (JPQL) update/remove on a range of entity objects.
+	 * Bulk update ranges are random. Bulk remove ranges are consecutive.
+	 *
+	 * @param em a connection to the test database
+	 * @param action either UPDATE or DELETE
+	 * @return number of affected objects (-1 - no more objects to remove).
+	 */
+	public final int doBulkAction(EntityManager em, ActionType action) {
+		int firstId;
+		if (action == ActionType.DELETE) {
+			firstId = nextBulkRemoveId.getAndAdd(batchSize);
+			if (firstId > maxId) {
+				return -1;
+			}
+		}
+		else {
+			firstId = Randomizer.randomInt(
+				minId, Math.max(maxId - batchSize + 1, minId));
+		}
+		return executeBulkAction(em, action, firstId);
+	}
+
+	/**
+	 * Executes a bulk (JPQL) update/remove on a range of entity objects.
+	 *
+	 * @param em a connection to the test database
+	 * @param action either UPDATE or DELETE
+	 * @param firstId the first id in the range (of batchSize ids)
+	 * @return number of affected entity objects.
+	 */
+	@SuppressWarnings("boxing")
+	private int executeBulkAction(
+			EntityManager em, ActionType action, int firstId) {
+		int count = 0;
+		try {
+			em.getTransaction().begin();
+			String field = "o." + getUpdateFieldName();
+			String ql = (action == ActionType.UPDATE) ?
+				"UPDATE " + getEntityName() + " o SET " +
+					field + " = " + field + " + 1" :
+				"DELETE FROM " + getEntityName() + " o";
+			Query query = em.createQuery(
+				ql + " WHERE o.id BETWEEN :firstId AND :lastId");
+			query.setParameter("firstId", firstId);
+			query.setParameter("lastId", firstId + batchSize - 1);
+			count = query.executeUpdate();
+			em.getTransaction().commit();
+			increaseActionCount(count);
+			if (action == ActionType.DELETE) {
+				entityCount -= count;
+			}
+		}
+		catch (RuntimeException e) {
+			if (!isLockException(e))
+				throw e; // ignore optimistic lock exceptions
+			metrics.count("LockFailures", 1); // but report them
+		}
+		finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * Checks how many entity objects are stale after bulk updates.
+	 * A stale entity object is loaded with its state before the bulk update,
+	 * e.g. from a shared (second level) cache that has not been invalidated.
+	 *
+	 * @param em a connection to the test database
+	 * @param rangeCount number of id ranges to check (of batchSize ids)
+	 * @return the ratio of stale entity objects (0 - none; 1 - all).
+	 */
+	@SuppressWarnings({ "boxing", "unchecked" })
+	public final double checkBulkUpdateVisibility(
+			EntityManager em, int rangeCount) {
+		PersistenceUnitUtil util =
+			em.getEntityManagerFactory().getPersistenceUnitUtil();
+		int checkCount = 0;
+		int staleCount = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			// Load a range of entity objects (filling caches, if any):
+			int firstId = Randomizer.randomInt(
+				minId, Math.max(maxId - batchSize + 1, minId));
+			Query query = em.createQuery("SELECT o FROM " + getEntityName() +
+				" o WHERE o.id BETWEEN :firstId AND :lastId");
+			query.setParameter("firstId", firstId);
+			query.setParameter("lastId", firstId + batchSize - 1);
+			Map<Object, Object> valueMap = new HashMap<Object, Object>();
+			for (Object entity : query.getResultList()) {
+				valueMap.put(util.getIdentifier(entity),
+					getFieldValue(entity, getUpdateFieldName()));
+			}
+			em.clear();
+
+			// Update the range and reload the entity objects by id:
+			executeBulkAction(em, ActionType.UPDATE, firstId);
+			for (Map.Entry<Object, Object> entry : valueMap.entrySet()) {
+				Object entity = em.find(getEntityClass(), entry.getKey());
+				if (entity != null) {
+					checkCount++;
+					if (entry.getValue().equals(
+							getFieldValue(entity, getUpdateFieldName()))) {
+						staleCount++;
+					}
+				}
+			}
+			em.clear();
+		}
+		return (checkCount == 0) ? 0 : (double)staleCount / checkCount;
+	}
+
+	// Query:
+
+	/**
+	 * Checks if this test includes queries.
+	 * 
+	 * @return true - if it includes queries; false - if not.
+	 */
+	public boolean hasQueries() {
+		return true; // overridden by tests with no queries 
+	}
+
+    /**
+     * Executes a query.
+     * 
+     * @param em a connection to the test database
+     * @return the query results (detached).
+     */
+    public List query(EntityManager em) {
+    	return query(em, SelectType.ENTITY);
+    }
+
+    /**
+     * Executes a query that selects entities, a projection or DTOs.
+     * 
+     * @param em a connection to the test database
+     * @param select one of ENTITY, PROJECTION (3 fields) or DTO (SELECT NEW)
+     * @return the query results (detached).
+     */
+    public final List query(EntityManager em, SelectType select) {
+    	// Prepare a target last name prefix:
+    	String prefix = randomNamePrefix();
+
+    	// Prepare the selection:
+    	String selection = "o";
+    	if (select == SelectType.PROJECTION) {
+    		selection = "o.firstName, o.lastName, o.email";
+    	}
+    	else if (select == SelectType.DTO) {
+    		selection = "NEW " + PersonSummary.class.getName() +
+    			"(o.firstName, o.lastName, o.email)";
+    	}
+
+    	// Execute the query:
+    	long allocatedBefore = MemoryHelper.getAllocatedBytes();
+    	long startTime = System.nanoTime();
+        Query query = (select == SelectType.ENTITY) ?
+        	createPrefixQuery(em, prefix + "%") :
+        	em.createQuery("SELECT " + selection + " FROM " +
+        		getEntityName() + " o WHERE o.lastName LIKE :pattern")
+        	.setParameter("pattern", prefix + "%");
+        List results = query.getResultList();
+
+        // Load the results (expected to be already loaded):
+        for (Object result : results) {
+        	if (result instanceof TestEntity) {
+        		((TestEntity)result).load();
+        	}
+        	else if (result instanceof PersonSummary) {
+        		((PersonSummary)result).load();
+        	}
+        	else {
+        		assert ((Object[])result).length == 3;
+        	}
+        }
+    	metrics.latency("Latency", System.nanoTime() - startTime);
+    	long allocatedAfter = MemoryHelper.getAllocatedBytes();
+    	if (allocatedBefore >= 0) {
+    		metrics.average("AllocationPerCall",
+    			allocatedAfter - allocatedBefore, 1);
+    	}
+    	if (allocatedBefore >= 0 && !results.isEmpty()) {
+    		metrics.average("AllocationPerRow",
+    			allocatedAfter - allocatedBefore, results.size());
+    	}
+        increaseActionCount(1);
+        em.clear();
+        return results;
+    }
+
+	// Query Plan Cache:
+
+	/**
+	 * Executes the last name prefix query as a repeated parameterized
+	 * string, as strings with inlined (random) patterns, or as a rotating
+	 * set of inlined patterns (test property "rotating-queries").
+	 * 
+	 * Only the pattern that the parameterized string binds is inlined,
+	 * so all the types execute the same predicate (and result sets).
+	 * 
+	 * @param em a connection to the test database
+	 * @param type one of REPEATED, INLINED or ROTATING
+	 */
+	public final void planCacheQuery(EntityManager em, PlanCacheType type) {
+		// Prepare the query string:
+		String pattern = randomNamePrefix() + "%";
+		if (type == PlanCacheType.ROTATING) {
+			String[] patterns = getRotatingPatterns();
+			pattern = patterns[(int)(
+				queryStringCounter.getAndIncrement() % patterns.length)];
+		}
+		String jpql = getPrefixJpql(getEntityName());
+		if (type != PlanCacheType.REPEATED) {
+			jpql = jpql.replace(":pattern", "'" + pattern + "'");
+		}
+
+		// Execute the query:
+		long allocatedBefore = MemoryHelper.getAllocatedBytes();
+		long startTime = System.nanoTime();
+		Query query = em.createQuery(jpql);
+		if (type == PlanCacheType.REPEATED) {
+			query.setParameter("pattern", pattern);
+		}
+		for (Object result : query.getResultList()) {
+			((TestEntity)result).load();
+		}
+		metrics.latency("Latency", System.nanoTime() - startTime);
+		long allocatedAfter = MemoryHelper.getAllocatedBytes();
+		if (allocatedBefore >= 0) {
+			metrics.average("AllocationPerCall",
+				allocatedAfter - allocatedBefore, 1);
+		}
+		increaseActionCount(1);
+		em.clear();
+	}
+
+	/**
+	 * Gets the patterns of the rotating query strings.
+	 * 
+	 * @return random last name prefix patterns (distinct).
+	 */
+	private synchronized String[] getRotatingPatterns() {
+		if (rotatingPatterns == null) {
+			int queryCount = Math.max(1, getIntProperty(
+				"rotating-queries", DEFAULT_ROTATING_QUERY_COUNT));
+			Set<String> patternSet = new LinkedHashSet<String>();
+			// Stops early if there are fewer distinct prefixes:
+			for (int i = 0; i < queryCount * 10 &&
+					patternSet.size() < queryCount; i++) {
+				patternSet.add(randomNamePrefix() + "%");
+			}
+			rotatingPatterns = patternSet.toArray(new String[patternSet.size()]);
+		}
+		return rotatingPatterns;
+	}
+
+	// Aggregate Query:
+
+	/**
+	 * Executes an aggregate (analytics) query.
+	 * 
+	 * @param em a connection to the test database
+	 * @param aggregate the aggregate query type
+	 */
+	@SuppressWarnings("boxing")
+	public final void aggregateQuery(EntityManager em, AggregateType aggregate) {
+		// Prepare the query:
+		String from = " FROM " + getEntityName() + " o";
+		Query query;
+		switch (aggregate) {
+			case COUNT:
+				query = em.createQuery(
+					"SELECT COUNT(o)" + from + " WHERE o.state = :state");
+				query.setParameter("state", Randomizer.randomState());
+				break;
+			case STATE_AVG:
+				query = em.createQuery("SELECT o.state, AVG(o.loginCount)" +
+					from + " GROUP BY o.state");
+				break;
+			case COUNTRY_AVG:
+				query = em.createQuery("SELECT o.country, AVG(o.loginCount)" +
+					from + " GROUP BY o.country");
+				break;
+			case MIN_MAX:
+				query = em.createQuery(
+					"SELECT MIN(o.birthDate), MAX(o.birthDate)" +
+					from + " WHERE o.state = :state");
+				query.setParameter("state", Randomizer.randomState());
+				break;
+			default: // HAVING - states with more than average objects
+				query = em.createQuery("SELECT o.state, COUNT(o)" + from +
+					" GROUP BY o.state HAVING COUNT(o) > :minCount");
+				query.setParameter("minCount", (long)entityCount / STATE_COUNT);
+				break;
+		}
+
+		// Execute the query:
+		long startTime = System.nanoTime();
+		List results = query.getResultList();
+		metrics.latency("Latency", System.nanoTime() - startTime);
+		metrics.average("Rows", results.size(), 1);
+		increaseActionCount(1);
+		em.clear();
+	}
+
+	// Selectivity Query:
+
+	/**
+	 * Selects random last name ranges (by ordinal) for every selectivity
+	 * point, so that range queries have known result sizes.
+	 * 
+	 * @param em a connection to the test database
+	 */
+	public final synchronized void prepareSelectivityQuery(EntityManager em) {
+		if (selectivityRanges != null) {
+			return; // already prepared (by another thread)
+		}
+		Query query = em.createQuery("SELECT COUNT(o) FROM " +
+			getEntityName() + " o");
+		int objectCount = ((Number)query.getSingleResult()).intValue();
+		if (selectivity == null) {
+			// Default - from a single row to 10% of the objects:
+			List<Integer> rowCountList = new ArrayList<Integer>();
+			int maxRowCount = Math.max(objectCount / 10, 1);
+			for (int count = 1; count < maxRowCount; count *= 10) {
+				rowCountList.add(Integer.valueOf(count));
+			}
+			rowCountList.add(Integer.valueOf(maxRowCount));
+			selectivity = new int[rowCountList.size()];
+			for (int i = 0; i < selectivity.length; i++) {
+				selectivity[i] = rowCountList.get(i).intValue();
+			}
+		}
+
+		// Find the names at the ordinals of the range ends (once):
+		selectivityRanges = new String[selectivity.length][];
+		for (int i = 0; i < selectivity.length && objectCount > 0; i++) {
+			int count = Math.min(selectivity[i], objectCount);
+			String[] bounds = new String[SELECTIVITY_RANGE_COUNT * 2];
+			for (int j = 0; j < bounds.length; j += 2) {
+				int firstIx = Randomizer.randomInt(0, objectCount - count);
+				bounds[j] = getNameAt(em, firstIx);
+				bounds[j + 1] = getNameAt(em, firstIx + count - 1);
+			}
+			selectivityRanges[i] = bounds;
+		}
+		em.clear();
+	}
+
+	/**
+	 * Gets the last name at a specified ordinal (in last name order).
+	 * 
+	 * @param em a connection to the test database
+	 * @param ordinal the zero based position of the name
+	 * @return the last name.
+	 */
+	private String getNameAt(EntityManager em, int ordinal) {
+		Query query = em.createQuery("SELECT o.lastName FROM " +
+			getEntityName() + " o ORDER BY o.lastName");
+		query.setFirstResult(ordinal);
+		query.setMaxResults(1);
+		return (String)query.getSingleResult();
+	}
+
+	/**
+	 * Executes a range query on the last name at every selectivity point.
+	 * 
+	 * The range ends are selected by ordinal in advance (see
+	 * prepareSelectivityQuery). Names are not unique, so a range may
+	 * include more rows than requested - the actual number is reported.
+	 * 
+	 * @param em a connection to the test database
+	 */
+	public final void selectivityQuery(EntityManager em) {
+		try {
+			for (int i = 0; i < selectivity.length; i++) {
+				String[] bounds = selectivityRanges[i];
+				if (bounds == null) {
+					return; // empty database
+				}
+				int j = 2 * Randomizer.randomInt(0, SELECTIVITY_RANGE_COUNT - 1);
+				Query query = em.createQuery("SELECT o FROM " + getEntityName() +
+					" o WHERE o.lastName BETWEEN :firstName AND :lastName");
+				query.setParameter("firstName", bounds[j]);
+				query.setParameter("lastName", bounds[j + 1]);
+
+				// Execute the query and load the results:
+				long startTime = System.nanoTime();
+				List<?> results = query.getResultList();
+				for (Object entity : results) {
+					((TestEntity)entity).load();
+				}
+				int rowCount = selectivity[i];
+				metrics.latency("Rows" + rowCount, System.nanoTime() - startTime);
+				metrics.average("ActualRows" + rowCount, results.size(), 1);
+				em.clear();
+			}
+			increaseActionCount(1);
+		}
+		finally {
+			em.clear();
+		}
+	}
+
+	// Full Table Scan:
+
+	/**
+	 * Walks all the entity objects in the database in pages of batchSize.
+	 * 
+	 * @param em a connection to the test database
+	 * @param scan one of KEYSET, OFFSET or STREAM
+	 * @param deadline System.nanoTime() value for stopping before the end 
+	 */
+	@SuppressWarnings("boxing")
+	public final void scan(EntityManager em, ScanType scan, long deadline) {
+		String ql = "SELECT o FROM " + getEntityName() + " o";
+		try {
+			if (scan == ScanType.STREAM) {
+				Query query = em.createQuery(ql + " ORDER BY o.id");
+				streamScan(em, query, deadline);
+				return;
+			}
+			PersistenceUnitUtil util =
+				em.getEntityManagerFactory().getPersistenceUnitUtil();
+			Object lastId = null;
+			int offset = 0;
+			while (System.nanoTime() < deadline) {
+				// Prepare a query for the next page:
+				Query query;
+				if (scan == ScanType.KEYSET && lastId != null) {
+					query = em.createQuery(
+						ql + " WHERE o.id > :lastId ORDER BY o.id");
+					query.setParameter("lastId", lastId);
+				}
+				else {
+					query = em.createQuery(ql + " ORDER BY o.id");
+					query.setFirstResult(offset);
+				}
+				query.setMaxResults(batchSize);
+
+				// Load the page:
+				List results = query.getResultList();
+				for (Object entity : results) {
+					((TestEntity)entity).load();
+					lastId = util.getIdentifier(entity);
+				}
+				offset += results.size();
+				completeScanPage(em, results.size());
+				if (results.size() < batchSize) {
+					break; // end of table
+				}
+			}
+		}
+		finally {
+			em.clear();
+		}
+	}
+
+	/**
+	 * Walks all the entity objects in the database using a single query
+	 * with a forward only cursor (Hibernate scroll or EclipseLink cursor).
+	 * 
+	 * @param em a connection to the test database
+	 * @param query a query that returns all the entity objects
+	 * @param deadline System.nanoTime() value for stopping before the end 
+	 */
+	@SuppressWarnings("boxing")
+	private void streamScan(EntityManager em, Query query, long deadline) {
+		// Fetch size hints (ignored by other providers):
+		query.setHint("org.hibernate.fetchSize", batchSize);
+		query.setHint("eclipselink.jdbc.fetch-size", batchSize);
+
+		// Open the result cursor and walk the result:
+		ResultCursor cursor = openCursor(query);
+		try {
+			int pageCount = 0;
+			Object entity;
+			while (System.nanoTime() < deadline &&
+					(entity = cursor.next()) != null) {
+				((TestEntity)entity).load();
+				if (++pageCount == batchSize) {
+					cursor.releasePage();
+					completeScanPage(em, pageCount);
+					pageCount = 0;
+				}
+			}
+			completeScanPage(em, pageCount);
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Opens a forward only cursor on a query result (by reflection - the
+	 * provider APIs are not available at compile time).
+	 * 
+	 * @param query a query to execute
+	 * @return the result cursor.
+	 */
+	private static ResultCursor openCursor(Query query) {
+		Class<?> queryClass = getProviderQueryClass(query);
+		if (queryClass == null) {
+			throw new UnsupportedOperationException(
+				"No result cursor for " + query.getClass().getName());
+		}
+		ClassLoader loader = queryClass.getClassLoader();
+		try {
+			if (queryClass.getName().equals(ECLIPSELINK_QUERY_CLASS_NAME)) {
+				query.setHint("eclipselink.cursor", Boolean.TRUE);
+				return new ResultCursor(query.getSingleResult(), Class.forName(
+					"org.eclipse.persistence.queries.CursoredStream",
+					true, loader));
+			}
+			Class<?> scrollModeClass =
+				Class.forName("org.hibernate.ScrollMode", true, loader);
+			Object scrollable = queryClass
+				.getMethod("scroll", scrollModeClass).invoke(
+					query.unwrap(queryClass),
+					scrollModeClass.getField("FORWARD_ONLY").get(null));
+			return new ResultCursor(scrollable, Class.forName(
+				"org.hibernate.ScrollableResults", true, loader));
+		}
+		catch (Exception e) {
+			throw ResultCursor.toPersistenceException(e);
+		}
+	}
+
+	/**
+	 * Gets the provider query interface that supports a result cursor.
+	 * 
+	 * @param query a query of the JPA provider
+	 * @return the query interface - or null if not supported.
+	 */
+	private static Class<?> getProviderQueryClass(Query query) {
+		ClassLoader loader = query.getClass().getClassLoader();
+		List<String> classNames =
+			new ArrayList<String>(Arrays.asList(HIBERNATE_QUERY_CLASS_NAMES));
+		classNames.add(ECLIPSELINK_QUERY_CLASS_NAME);
+		for (String className : classNames) {
+			try {
+				Class<?> queryClass = Class.forName(className, true, loader);
+				if (query.unwrap(queryClass) != null) {
+					return queryClass;
+				}
+			}
+			catch (Exception e) {
+				// not available or not the provider of the query
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Completes a page of a full table scan.
+	 * 
+	 * @param em a connection to the test database
+	 * @param count number of entity objects in the page
+	 */
+	private void completeScanPage(EntityManager em, int count) {
+		increaseActionCount(count);
+		metrics.peak("PeakHeap", MemoryHelper.getUsedHeap());
+		em.clear(); // the scanned entity objects are not needed anymore
+	}
+
+	//------------------------//
+	// Implementation Methods //
+	//------------------------//
+
+	// Test Details:
+
+	/**
+	 * Gets the type of the test main entity class.
+	 * 
+	 * @return the type of the test main entity class.
+	 */
+	protected abstract Class getEntityClass();
+
+	/**
+	 * Gets the unqualified name of the test main entity class.
+	 * 
+	 * @return the unqualified name of the test main entity class.
+	 */
+	public final String getEntityName() {
+		return FormatHelper.getShortClassName(getEntityClass());
+	}
+
+	/**
+	 * Gets the number of reachable objects from every root entity object.
+	 * 
+	 * @return the number of reachable objects from every root entity object.
+	 */
+	protected int getGraphSize() {
+		return 1; // overridden by NodeTest
+	}
+
+	/**
+	 * Gets the size of the payload (persistent data) of an entity object.
+	 * 
+	 * @return the payload size in bytes (or 0 if not reported).
+	 */
+	protected int getPayloadSize() {
+		return 0; // overridden by tests with large payloads
+	}
+
+	/**
+	 * Gets the JOIN FETCH clauses for retrieving the main entity class.
+	 * 
+	 * @return the JOIN FETCH clauses (e.g. " LEFT JOIN FETCH o.phones").
+	 */
+	protected String getFetchJoins() {
+		return ""; // overridden by tests with relationships / collections
+	}
+
+	/**
+	 * Gets the name of the int field that TestEntity.update() increases.
+	 *
+	 * @return the name of the field that is increased by bulk updates.
+	 */
+	protected String getUpdateFieldName() {
+		return "loginCount"; // overridden by NodeTest
+	}
+
+	/**
+	 * Gets the lowest entity object id (as loaded by loadIdRange).
+	 * 
+	 * @return the lowest entity object id.
+	 */
+	protected final int getMinId() {
+		return minId;
+	}
+
+	/**
+	 * Gets the highest entity object id (as loaded by loadIdRange).
+	 * 
+	 * @return the highest entity object id.
+	 */
+	protected final int getMaxId() {
+		return maxId;
+	}
+
+	/**
+	 * Gets a random id of an entity object root (that may be missing).
+	 * 
+	 * @param fromId the lowest id to return (inclusive)
+	 * @param toId the highest id to return (inclusive)
+	 * @return the random id.
+	 */
+	@SuppressWarnings("boxing")
+	protected Object randomId(int fromId, int toId) {
+		return Randomizer.randomInt(fromId, toId); // overridden by NodeTest
+	}
+
+	/**
+	 * Gets a random id with skewed access (80% of the ids are selected from
+	 * a hot set of 20% of the objects).
+	 * 
+	 * @return the random id.
+	 */
+	private Object randomSkewedId() {
+		if (Randomizer.randomInt(1, 100) <= HOT_ACCESS_PERCENT) {
+			int hotMaxId = minId + (maxId - minId) * HOT_SET_PERCENT / 100;
+			return randomId(minId, hotMaxId);
+		}
+		return randomId(minId, maxId);
+	}
+
+	/**
+	 * Gets distinct random ids of entity object roots.
+	 * 
+	 * @param count number of requested ids
+	 * @return the random ids.
+	 */
+	private List<Object> randomIds(int count) {
+		return randomIds(count, minId, maxId);
+	}
+
+	/**
+	 * Gets distinct random ids of entity object roots in a specified range.
+	 * 
+	 * @param count number of requested ids
+	 * @param fromId the lowest id to return (inclusive)
+	 * @param toId the highest id to return (inclusive)
+	 * @return the random ids.
+	 */
+	private List<Object> randomIds(int count, int fromId, int toId) {
+		Set<Object> idSet = new LinkedHashSet<Object>(count * 2);
+		for (int attempt = 0; idSet.size() < count && attempt < count * 4;
+				attempt++) {
+			idSet.add(randomId(fromId, toId));
+		}
+		return new ArrayList<Object>(idSet);
+	}
+
+	// Entity Operations:
+
+	/**
+	 * Creates a new entity object (graph) for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+	protected abstract TestEntity newEntity();
+
+	/**
+	 * Persists a new entity object (graph) in an active transaction.
+	 * 
+	 * @param em a connection to the test database
+	 * @param entity the new entity object (from the inventory)
+	 */
+	protected void persistEntity(EntityManager em, TestEntity entity) {
+		em.persist(entity); // overridden by tests with shared references
+	}
+
+	/**
+	 * Updates a managed entity object (graph) in an active transaction.
+	 * 
+	 * @param em a connection to the test database
+	 * @param entity the managed entity object
+	 */
+	protected void updateEntity(EntityManager em, TestEntity entity) {
+		entity.update(); // overridden by tests with shared references
+	}
+
+	/**
+	 * Retrieves entity object roots.
+	 * 
+	 * @param em a connection to the database
+	 * @param count number of requested entity object roots
+	 * @param isRandom true - for random retrieval; false - for first returned 
+	 * @param the entity object roots.
+	 */
+	@SuppressWarnings("boxing")
+	protected List retireveEntities(
+			EntityManager em, int count, boolean isRandom) {
+		int maxFirstId = Math.max(entityCount - count, 1);
+		int firstId = Randomizer.randomInt(1, maxFirstId);
+		long startTime = System.nanoTime();
+		Query query = createRangeQuery(em, firstId);
+		query.setMaxResults(count);
+		List result = query.getResultList();
+		metrics.latency("QueryLatency", System.nanoTime() - startTime);
+		return result;
+	}
+
+	// Query Building:
+
+	/**
+	 * Gets a random last name prefix (longer in larger databases).
+	 * 
+	 * @return the random prefix.
+	 */
+	private String randomNamePrefix() {
+		int prefixLength = 1; // depends on batch size
+		for (int count = entityCount; (count /= 26) > batchSize; ) {
+			prefixLength++;
+		}
+		return Randomizer.randomString(prefixLength, prefixLength + 1);
+	}
+
+	/**
+	 * Gets the JPQL of the last name prefix query.
+	 * 
+	 * @param entityName the entity name of the test main entity class
+	 * @return the JPQL query string.
+	 */
+	static String getPrefixJpql(String entityName) {
+		return "SELECT o FROM " + entityName + " o WHERE o.lastName LIKE :pattern";
+	}
+
+	/**
+	 * Gets the JPQL of the id range query.
+	 * 
+	 * @param entityName the entity name of the test main entity class
+	 * @return the JPQL query string.
+	 */
+	static String getRangeJpql(String entityName) {
+		return "SELECT o FROM " + entityName + " o WHERE o.id >= :firstId";
+	}
+
+	/**
+	 * Creates the last name prefix query using the configured query API.
+	 * Native SQL assumes default table and column names.
+	 * 
+	 * @param em a connection to the test database
+	 * @param pattern the LIKE pattern (e.g. "AB%")
+	 * @return the query (ready for execution).
+	 */
+	@SuppressWarnings("unchecked")
+	private Query createPrefixQuery(EntityManager em, String pattern) {
+		switch (queryApi) {
+			case NAMED:
+				return em.createNamedQuery(PREFIX_QUERY_NAME)
+					.setParameter("pattern", pattern);
+			case CRITERIA:
+				CriteriaBuilder cb = em.getCriteriaBuilder();
+				CriteriaQuery<Object> cq = cb.createQuery(getEntityClass());
+				Root<Object> root = cq.from(getEntityClass());
+				cq.select(root).where(cb.like(root.<String>get("lastName"),
+					cb.parameter(String.class, "pattern")));
+				return em.createQuery(cq).setParameter("pattern", pattern);
+			case NATIVE:
+				return em.createNativeQuery("SELECT * FROM " + getEntityName() +
+					" WHERE lastName LIKE ?1", getEntityClass())
+					.setParameter(1, pattern);
+			default:
+				return em.createQuery(getPrefixJpql(getEntityName()))
+					.setParameter("pattern", pattern);
+		}
+	}
+
+	/**
+	 * Creates the id range query using the configured query API.
+	 * Native SQL assumes default table and column names.
+	 * 
+	 * @param em a connection to the test database
+	 * @param firstId the lowest id to retrieve
+	 * @return the query (ready for execution).
+	 */
+	@SuppressWarnings({ "unchecked", "boxing" })
+	private Query createRangeQuery(EntityManager em, int firstId) {
+		switch (queryApi) {
+			case NAMED:
+				return em.createNamedQuery(RANGE_QUERY_NAME)
+					.setParameter("firstId", firstId);
+			case CRITERIA:
+				CriteriaBuilder cb = em.getCriteriaBuilder();
+				CriteriaQuery<Object> cq = cb.createQuery(getEntityClass());
+				Root<Object> root = cq.from(getEntityClass());
+				cq.select(root).where(cb.greaterThanOrEqualTo(
+					root.<Integer>get("id"), cb.parameter(Integer.class, "firstId")));
+				return em.createQuery(cq).setParameter("firstId", firstId);
+			case NATIVE:
+				return em.createNativeQuery("SELECT * FROM " + getEntityName() +
+					" WHERE id >= ?1", getEntityClass())
+					.setParameter(1, firstId);
+			default:
+				return em.createQuery(getRangeJpql(getEntityName()))
+					.setParameter("firstId", firstId);
+		}
+	}
+
+	//----------------//
+	// Helper Methods //
+	//----------------//
+
+	/**
+	 * Gets the value of a field of an entity object (using reflection).
+	 *
+	 * @param entity the entity object
+	 * @param fieldName the name of the field (in the class or a superclass)
+	 * @return the field value.
+	 */
+	private static Object getFieldValue(Object entity, String fieldName) {
+		for (Class cls = entity.getClass(); cls != null;
+				cls = cls.getSuperclass()) {
+			try {
+				java.lang.reflect.Field field = cls.getDeclaredField(fieldName);
+				field.setAccessible(true);
+				return field.get(entity);
+			}
+			catch (NoSuchFieldException e) {
+				// continue to the superclass
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		throw new IllegalArgumentException("Field " + fieldName +
+			" is not found in " + entity.getClass().getName());
+	}
+
+	/**
+	 * Records the bytes moved by persist / retrieve and the allocation per
+	 * byte (only in tests that report their payload size).
+	 *
+	 * @param allocatedBefore thread allocated bytes before the operation
+	 * @param objectCount number of persisted / retrieved entity objects
+	 */
+	private void recordPayload(long allocatedBefore, int objectCount) {
+		long byteCount = (long)getPayloadSize() * objectCount;
+		if (byteCount > 0) {
+			metrics.count("Bytes", byteCount);
+			long allocatedAfter = MemoryHelper.getAllocatedBytes();
+			if (allocatedBefore >= 0) {
+				metrics.average("AllocationPerByte",
+					allocatedAfter - allocatedBefore, byteCount);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a specified exception represents a deadlock.
+	 * 
+	 * @param e an exception for check
+	 * @return true - if it does; false - if it does not.
+	 */
+	private static boolean isDeadlockException(Throwable e) {
+		for (; e != null; e = e.getCause()) {
+			String msg = e.getMessage();
+			if (msg != null && msg.toLowerCase().contains("deadlock")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a specified exception represents a lock timeout.
+	 * 
+	 * @param e an exception for check
+	 * @return true - if it does; false - if it does not.
+	 */
+	private static boolean isTimeoutException(Throwable e) {
+		for (; e != null; e = e.getCause()) {
+			if (e instanceof LockTimeoutException) {
+				return true;
+			}
+			String msg = e.getMessage();
+			if (msg != null && msg.toLowerCase().contains("timeout")) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 	/**
 	 * Checks if a specified exception represents a lock failure.
@@ -394,7 +1842,9 @@ public abstract class Test {
 	 */
 	private static boolean isLockException(Throwable e) {
 		
-		if (e instanceof OptimisticLockException) {
+		if (e instanceof OptimisticLockException ||
+				e instanceof PessimisticLockException ||
+				e instanceof LockTimeoutException) {
 			return true;
 		}
 		String msg = e.getMessage();
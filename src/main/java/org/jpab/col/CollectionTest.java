@@ -46,4 +46,24 @@ public class CollectionTest extends Test {
     protected TestEntity newEntity() {
         return new CollectionPerson(this);
     }
+
+    /**
+     * Gets the JOIN FETCH clauses for retrieving the main entity class.
+     * 
+     * @return the JOIN FETCH clause of the phones collection.
+     */
+    @Override
+    protected String getFetchJoins() {
+        return " LEFT JOIN FETCH o.phones";
+    }
+
+    /**
+     * Checks if the entity objects of this test can be removed by JPQL DELETE.
+     * 
+     * @return false - the element collection rows are not removed.
+     */
+    @Override
+    public boolean supportsBulkRemove() {
+        return false;
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved. 
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.ext;
+
+import org.jpab.*;
+
+
+/**
+ * Tests using simple Person entity objects with inheritance.
+ * All the levels of the hierarchy are stored, and all the actions are
+ * polymorphic (using the base class), so the inheritance strategy
+ * (test specific property "inheritance") has a full effect.
+ */
+public class ExtTest extends Test {
+    
+    /**
+     * Gets the type of the benchmark main entity class.
+     * 
+     * @return the type of the benchmark main entity class.
+     */
+    @Override
+    protected Class getEntityClass() {
+        return PersonBase.class;
+    }
+
+    /**
+     * Gets the name of the int field that TestEntity.update() increases.
+     *
+     * @return the name of the field that is increased by bulk updates.
+     */
+    @Override
+    protected String getUpdateFieldName() {
+        return "changeCount";
+    }
+
+	/**
+	 * Creates a new entity object (of a random hierarchy level).
+	 * 
+	 * @return the new constructed entity object.
+	 */
+    @Override
+    protected TestEntity newEntity() {
+        switch (Randomizer.randomInt(0, 2)) {
+            case 0:
+                return new PersonBase(this);
+            case 1:
+                return new PersonExt(this);
+            default:
+                return new PersonExtExt(this);
+        }
+    }
+}
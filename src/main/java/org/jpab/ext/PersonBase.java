@@ -25,11 +25,12 @@ import org.jpab.*;
 
 /**
  * A simple based entity class.
+ * The inheritance strategy is set by Main in a generated mapping file.
  */
 @Entity
 @DiscriminatorColumn
 @TableGenerator(name="extSeq", allocationSize=1000)
-public class PersonBase {
+public class PersonBase implements TestEntity {
 	
 	// Fields:
 
@@ -40,6 +41,8 @@ public class PersonBase {
 	private String middleName;
 	private String lastName;
 
+	@Basic private int changeCount;
+
 	// Constructors:
 
     public PersonBase() {
@@ -58,6 +61,10 @@ public class PersonBase {
 		assert firstName != null && middleName != null && lastName != null;
     }
 
+    public void update() {
+    	changeCount++;
+    }
+
     @Override
     public String toString() {
     	StringBuilder sb = new StringBuilder(64);
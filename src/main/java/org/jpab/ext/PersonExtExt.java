@@ -29,7 +29,7 @@ import org.jpab.*;
  * A simple sub entity class (two inheritance levels).
  */
 @Entity
-public class PersonExtExt extends PersonExt implements TestEntity {
+public class PersonExtExt extends PersonExt {
 	
 	// Fields:
 
@@ -67,7 +67,9 @@ public class PersonExtExt extends PersonExt implements TestEntity {
 			lastLoginDate != null && loginCount > 0;
     }
 
+    @Override
     public void update() {
+    	super.update();
     	lastLoginDate = new Date();
     	loginCount++;
     }
@@ -0,0 +1,92 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.graph;
+
+import java.util.*;
+import javax.persistence.*;
+
+import org.jpab.*;
+
+
+/**
+ * A graph node entity class with any number of (possibly shared) children.
+ */
+@Entity
+public class GraphNode implements TestEntity {
+    
+	// Fields:
+
+	@Id Integer id;
+    
+    @Basic int changeCount;
+
+    @ManyToMany(cascade=CascadeType.ALL, fetch=FetchType.EAGER)
+    private List<GraphNode> children;
+
+	// Constructors:
+
+    public GraphNode() {
+    }
+    
+    public GraphNode(int id) {
+        this.id = Integer.valueOf(id);
+        this.children = new ArrayList<GraphNode>(2);
+    }
+
+	// Methods:
+
+    public void addChild(GraphNode child) {
+        children.add(child);
+    }
+
+    public List<GraphNode> getChildren() {
+        return children;
+    }
+
+    public void load() {
+        load(new HashSet<GraphNode>());
+    }
+
+    private void load(Set<GraphNode> visited) {
+        if (visited.add(this)) { // shared nodes are visited once
+            for (GraphNode child : children) {
+                child.load(visited);
+            }
+        }
+    }
+
+    public void update() {
+        update(new HashSet<GraphNode>());
+    }
+
+    private void update(Set<GraphNode> visited) {
+        if (visited.add(this)) { // shared nodes are updated once
+            changeCount++;
+            for (GraphNode child : children) {
+                child.update(visited);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(id);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.graph;
+
+import java.util.concurrent.atomic.*;
+
+import org.jpab.*;
+import org.jpab.node.*;
+
+
+/**
+ * Tests using graphs of entity objects with a configurable shape.
+ * 
+ * Test specific properties: graph-fan-out (children per node), graph-depth
+ * (levels), graph-size (maximum nodes per graph) and graph-sharing
+ * (percentage of nodes with an extra link to a node of another parent,
+ * which turns the tree into a DAG).
+ */
+public class GraphTest extends NodeTest {
+
+    // Data Members:
+
+    /** Number of children per node (in the tree part of the graph) */
+    private int fanOut;
+
+    /** Percentage of nodes with an additional link to a shared node */
+    private int sharingPercent;
+
+    /** Index of the first node of every level (and the end of the last) */
+    private int[] levelStarts;
+
+    /** The size of a single graph in nodes (entity objects) */
+    private int graphSize;
+
+    /** Last allocated graph ID - for generating primary keys */
+    private final AtomicInteger lastGraphId = new AtomicInteger(0); 
+
+    // Test Methods:
+
+	/**
+	 * Sets the test code and reads the graph shape properties.
+	 * 
+	 * @param testCode the test code (e.g. "test1a")
+	 */
+    @Override
+    public void setTestCode(String testCode) {
+        super.setTestCode(testCode);
+        fanOut = getIntProperty("graph-fan-out", 2);
+        int depth = getIntProperty("graph-depth", 7);
+        int maxSize = getIntProperty("graph-size", 100);
+        sharingPercent = getIntProperty("graph-sharing", 0);
+
+        // Calculate the level boundaries (nodes are in breadth first order):
+        levelStarts = new int[depth + 2];
+        long levelSize = 1;
+        for (int level = 0; level <= depth; level++) {
+            levelStarts[level + 1] = (int)Math.min(
+                levelStarts[level] + ((level < depth) ? levelSize : 0), maxSize);
+            // Capped (no overflow - levelSize and fanOut are at most int):
+            levelSize = Math.min(levelSize * fanOut, maxSize);
+        }
+        graphSize = levelStarts[depth];
+    }
+
+    /**
+     * Gets the type of the benchmark main entity class.
+     * 
+     * @return the type of the benchmark main entity class.
+     */
+    @Override
+    protected Class getEntityClass() {
+        return GraphNode.class; 
+    }
+
+    /**
+     * Gets the JOIN FETCH clauses for retrieving the main entity class.
+     *
+     * @return the JOIN FETCH clause of the root children (first level).
+     */
+    @Override
+    protected String getFetchJoins() {
+        return " LEFT JOIN FETCH o.children";
+    }
+
+    /**
+     * Gets the number of reachable objects from every root entity object. 
+     * 
+     * @return the number of reachable objects from every root entity object.
+     */
+    @Override
+    protected int getGraphSize() {
+        return graphSize;
+    }
+
+	/**
+	 * Creates a new entity object (graph) for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+    @Override
+    protected TestEntity newEntity() {
+        int graphId = lastGraphId.incrementAndGet();
+
+        // Build a tree (the parent of node ix is node (ix - 1) / fanOut):
+        GraphNode[] nodes = new GraphNode[graphSize];
+        for (int nodeIx = 0; nodeIx < graphSize; nodeIx++) {
+            nodes[nodeIx] = new GraphNode(graphId * graphSize + nodeIx + 1);
+            if (nodeIx > 0) {
+                nodes[(nodeIx - 1) / fanOut].addChild(nodes[nodeIx]);
+            }
+        }
+
+        // Share subtrees - add links to nodes of other parents (DAG):
+        if (sharingPercent > 0) {
+            int level = 0;
+            for (int nodeIx = 0; nodeIx < graphSize; nodeIx++) {
+                while (nodeIx >= levelStarts[level + 1]) {
+                    level++;
+                }
+                int firstIx = levelStarts[level + 1];
+                int lastIx = levelStarts[level + 2] - 1;
+                if (firstIx <= lastIx &&
+                        Randomizer.randomInt(1, 100) <= sharingPercent) {
+                    int childIx = Randomizer.randomInt(firstIx, lastIx);
+                    if ((childIx - 1) / fanOut != nodeIx) {
+                        nodes[nodeIx].addChild(nodes[childIx]);
+                    }
+                }
+            }
+        }
+        return nodes[0];
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.id;
+
+import java.util.concurrent.atomic.*;
+
+import org.jpab.*;
+
+
+/**
+ * Tests persisting Person entity objects with different primary key
+ * generation strategies (test specific property "id-strategy").
+ * The TABLE and SEQUENCE allocation size is set by "allocation-size".
+ */
+public class IdTest extends Test {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Primary key generation strategies (values of "id-strategy") */
+	public enum IdStrategy {
+		TABLE, SEQUENCE, IDENTITY, UUID, ORDERED_UUID, CLIENT
+	}
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The primary key generation strategy of the test */
+	private IdStrategy strategy = IdStrategy.TABLE;
+
+	/** Last id that was assigned by the application (CLIENT) */
+	private final AtomicLong lastClientId = new AtomicLong();
+
+	/** Last time based UUID component (ORDERED_UUID) */
+	private final AtomicLong lastUuidTime = new AtomicLong();
+
+	//---------------//
+	// Configuration //
+	//---------------//
+
+	/**
+	 * Sets the test code and the primary key generation strategy.
+	 * 
+	 * @param testCode the test code (e.g. "test17a")
+	 */
+	@Override
+	public void setTestCode(String testCode) {
+		super.setTestCode(testCode);
+		String value = getProperty("id-strategy");
+		if (value != null) {
+			strategy = IdStrategy.valueOf(value.trim());
+		}
+	}
+
+	/**
+	 * Gets the actions that follow persist if the test code has no actions.
+	 *
+	 * @return comma separated action names (see Runner action wrappers).
+	 */
+	@Override
+	public String getDefaultActions() {
+		return ""; // the id strategy mainly affects persist
+	}
+
+	//----------------//
+	// Implementation //
+	//----------------//
+
+	/**
+	 * Gets the type of the benchmark main entity class.
+	 * 
+	 * @return the type of the benchmark main entity class.
+	 */
+	@Override
+	protected Class getEntityClass() {
+		switch (strategy) {
+			case SEQUENCE:
+				return SequencePerson.class;
+			case IDENTITY:
+				return IdentityPerson.class;
+			case UUID:
+				return UuidPerson.class;
+			case ORDERED_UUID:
+				return OrderedUuidPerson.class;
+			case CLIENT:
+				return ClientIdPerson.class;
+			default:
+				return TablePerson.class;
+		}
+	}
+
+	/**
+	 * Creates a new entity object for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+	@Override
+	@SuppressWarnings("boxing")
+	protected TestEntity newEntity() {
+		switch (strategy) {
+			case SEQUENCE:
+				return new SequencePerson(this);
+			case IDENTITY:
+				return new IdentityPerson(this);
+			case UUID:
+				return new UuidPerson(this);
+			case ORDERED_UUID:
+				return new OrderedUuidPerson(this, newOrderedUuid());
+			case CLIENT:
+				return new ClientIdPerson(this, lastClientId.incrementAndGet());
+			default:
+				return new TablePerson(this);
+		}
+	}
+
+	/**
+	 * Generates a time ordered UUID string (a 60 bit time component in
+	 * 100ns units, followed by random bits), so that new ids are appended
+	 * at the end of the primary key index, as with sequences.
+	 * 
+	 * @return the new UUID string.
+	 */
+	@SuppressWarnings("boxing")
+	private String newOrderedUuid() {
+		// Unique and increasing time component (even on the same clock tick):
+		long now = System.currentTimeMillis() * 10000;
+		long last, time;
+		do {
+			last = lastUuidTime.get();
+			time = Math.max(now, last + 1);
+		} while (!lastUuidTime.compareAndSet(last, time));
+
+		// Format as a version 1 like UUID (time high bits first):
+		String hex = String.format("%015x%016x", time,
+			java.util.UUID.randomUUID().getLeastSignificantBits());
+		return hex.substring(0, 8) + '-' + hex.substring(8, 12) + "-1" +
+			hex.substring(12, 15) + '-' + hex.substring(15, 19) + '-' +
+			hex.substring(19, 31);
+	}
+}
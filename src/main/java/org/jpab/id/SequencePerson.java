@@ -0,0 +1,48 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.id;
+
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * A Person entity class with a SEQUENCE generated id
+ * (the allocation size is overridden by test property "allocation-size").
+ */
+@Entity
+@SequenceGenerator(name="idSeq", allocationSize=50)
+public class SequencePerson extends AbstractPerson {
+	
+	// Fields:
+
+	@Id @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="idSeq")
+    private Integer id;
+
+	// Constructors:
+
+    public SequencePerson() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public SequencePerson(Test test) {
+    	super(test);
+    }
+}
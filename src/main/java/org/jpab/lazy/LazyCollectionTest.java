@@ -17,15 +17,16 @@
  * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
  */
 
-package org.jpab.ext;
+package org.jpab.lazy;
 
 import org.jpab.*;
+import org.jpab.col.*;
 
 
 /**
- * Tests using simple Person entity objects with inheritance.
+ * Tests using simple Person entity objects with lazy element collections.  
  */
-public class ExtTest extends Test {
+public class LazyCollectionTest extends CollectionTest {
     
     /**
      * Gets the type of the benchmark main entity class.
@@ -34,7 +35,7 @@ public class ExtTest extends Test {
      */
     @Override
     protected Class getEntityClass() {
-        return PersonExtExt.class;
+        return LazyCollectionPerson.class;
     }
 
 	/**
@@ -44,6 +45,6 @@ public class ExtTest extends Test {
 	 */
     @Override
     protected TestEntity newEntity() {
-        return new PersonExtExt(this);
+        return new LazyCollectionPerson(this);
     }
 }
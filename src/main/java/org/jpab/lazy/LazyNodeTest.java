@@ -0,0 +1,58 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.lazy;
+
+import org.jpab.*;
+import org.jpab.node.*;
+
+
+/**
+ * Tests using graphs (trees) of entity objects with lazy references.
+ */
+public class LazyNodeTest extends NodeTest {
+
+    // Test Methods:
+
+    /**
+     * Gets the type of the benchmark main entity class.
+     * 
+     * @return the type of the benchmark main entity class.
+     */
+    @Override
+    protected Class getEntityClass() {
+        return LazyNode.class; 
+    }
+
+	/**
+	 * Creates a new tree node.
+	 * 
+	 * @param id the primary key of the new node
+	 * @param child1 the first child node (or null)
+	 * @param child2 the second child node (or null)
+	 * @return the new constructed node.
+	 */
+    @Override
+    protected TestEntity newNode(int id, TestEntity child1, TestEntity child2) {
+        LazyNode node = new LazyNode(id);
+        node.setChild1((LazyNode)child1);
+        node.setChild2((LazyNode)child2);
+        return node;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.lob;
+
+import java.util.*;
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * An entity class with large binary and character (LOB) fields.
+ */
+@Entity
+@TableGenerator(name="documentSeq", allocationSize=1000)
+public class Document implements TestEntity {
+	
+	// Fields:
+
+	@Id @GeneratedValue(strategy=GenerationType.TABLE, generator="documentSeq")
+    private Integer id;
+
+	private String name;
+
+	@Lob
+	private byte[] data;
+
+	@Lob
+	private String text;
+
+	@Basic private int changeCount;
+
+	// Constructors:
+
+    public Document() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public Document(LobTest test) {
+    	name = Randomizer.randomString(6, 12);
+    	data = test.randomBytes();
+    	text = test.randomText();
+    }
+
+	// Methods:
+
+    public void load() {
+		assert name != null && data != null && text != null &&
+			data.length == text.length();
+    }
+
+    public void update() {
+    	// Replace the array (in place changes are not always detected,
+    	// and new entity objects share arrays - see LobTest.randomBytes):
+    	byte[] newData = data.clone();
+    	newData[Randomizer.randomInt(0, newData.length - 1)]++;
+    	data = newData;
+    	changeCount++;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
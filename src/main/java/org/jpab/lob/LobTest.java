@@ -0,0 +1,204 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.lob;
+
+import java.util.*;
+
+import org.jpab.*;
+
+
+/**
+ * Tests using Document entity objects with LOB fields of a configurable
+ * size (test specific property "lob-size" - in bytes / characters).
+ * Persist and retrieve also report bytes per second and allocation per
+ * byte moved.
+ */
+public class LobTest extends Test {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Default size of every LOB field (in bytes / characters) */
+	private static final int DEFAULT_LOB_SIZE = 64 * 1024;
+
+	/** Maximum number of distinct (shared) LOB values per field */
+	private static final int MAX_VARIANTS = 16;
+
+	/** Maximum heap memory of all the shared LOB values (in bytes) */
+	private static final int MAX_VARIANTS_MEMORY = 64 * 1024 * 1024;
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** Size of every LOB field (in bytes / characters) */
+	private int lobSize = DEFAULT_LOB_SIZE;
+
+	/** Shared binary LOB values (never modified in place) */
+	private byte[][] byteVariants;
+
+	/** Shared character LOB values */
+	private String[] textVariants;
+
+	//---------------//
+	// Configuration //
+	//---------------//
+
+	/**
+	 * Sets the test code and the LOB size.
+	 * 
+	 * @param testCode the test code (e.g. "test20a")
+	 */
+	@Override
+	public void setTestCode(String testCode) {
+		super.setTestCode(testCode);
+		lobSize = Math.max(getIntProperty("lob-size", DEFAULT_LOB_SIZE), 1);
+	}
+
+	/**
+	 * Checks if this test includes queries.
+	 * 
+	 * @return true - if it includes queries; false - if not.
+	 */
+	@Override
+	public boolean hasQueries() {
+		return false; 
+	}
+
+	//----------//
+	// Payloads //
+	//----------//
+
+	/**
+	 * Gets a binary LOB value for a new entity object.
+	 * 
+	 * The value is one of a few shared arrays (so the inventory memory
+	 * does not grow with the LOB size), which must not be modified in place.
+	 * 
+	 * @return a shared random binary value.
+	 */
+	byte[] randomBytes() {
+		byte[][] variants = getByteVariants();
+		return variants[Randomizer.randomInt(0, variants.length - 1)];
+	}
+
+	/**
+	 * Gets a character LOB value for a new entity object.
+	 * 
+	 * @return a shared random character value.
+	 */
+	String randomText() {
+		String[] variants = getTextVariants();
+		return variants[Randomizer.randomInt(0, variants.length - 1)];
+	}
+
+	/**
+	 * Gets the number of distinct shared values per LOB field.
+	 * 
+	 * @return the number of values that fit in the shared values memory
+	 * 		(3 bytes per LOB byte / character, at least 1).
+	 */
+	private int getVariantCount() {
+		return (int)Math.max(1, Math.min(MAX_VARIANTS,
+			MAX_VARIANTS_MEMORY / (3L * lobSize)));
+	}
+
+	/**
+	 * Gets the shared binary LOB values (built on first use).
+	 * 
+	 * @return the shared random binary values.
+	 */
+	private synchronized byte[][] getByteVariants() {
+		if (byteVariants == null) {
+			Random random = new Random(lobSize);
+			byteVariants = new byte[getVariantCount()][];
+			for (int i = 0; i < byteVariants.length; i++) {
+				byteVariants[i] = new byte[lobSize];
+				random.nextBytes(byteVariants[i]);
+			}
+		}
+		return byteVariants;
+	}
+
+	/**
+	 * Gets the shared character LOB values (built on first use).
+	 * 
+	 * @return the shared random character values.
+	 */
+	private synchronized String[] getTextVariants() {
+		if (textVariants == null) {
+			textVariants = new String[getVariantCount()];
+			for (int i = 0; i < textVariants.length; i++) {
+				StringBuilder sb = new StringBuilder(lobSize + 21);
+				while (sb.length() < lobSize) {
+					sb.append(Randomizer.randomString(1, 20)).append(' ');
+				}
+				sb.setLength(lobSize);
+				textVariants[i] = sb.toString();
+			}
+		}
+		return textVariants;
+	}
+
+	//----------------//
+	// Implementation //
+	//----------------//
+
+	/**
+	 * Gets the type of the benchmark main entity class.
+	 * 
+	 * @return the type of the benchmark main entity class.
+	 */
+	@Override
+	protected Class getEntityClass() {
+		return Document.class;
+	}
+
+	/**
+	 * Gets the size of the payload (persistent data) of an entity object.
+	 * 
+	 * @return the total size of the LOB fields (characters as bytes).
+	 */
+	@Override
+	protected int getPayloadSize() {
+		return lobSize * 2;
+	}
+
+	/**
+	 * Gets the name of the int field that TestEntity.update() increases.
+	 *
+	 * @return the name of the field that is increased by bulk updates.
+	 */
+	@Override
+	protected String getUpdateFieldName() {
+		return "changeCount";
+	}
+
+	/**
+	 * Creates a new entity object for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+	@Override
+	protected TestEntity newEntity() {
+		return new Document(this);
+	}
+}
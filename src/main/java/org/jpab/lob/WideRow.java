@@ -0,0 +1,105 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.lob;
+
+import java.lang.reflect.*;
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * A wide entity class (122 columns) with 100 string fields and 20 int
+ * fields (in addition to the id and the change counter).
+ */
+@Entity
+@TableGenerator(name="wideRowSeq", allocationSize=1000)
+public class WideRow implements TestEntity {
+
+	// Constants:
+
+	/** Number of characters in every string field */
+	static final int STRING_LENGTH = 10;
+
+	/** Size of the payload of a single row (characters as bytes) */
+	static final int PAYLOAD_SIZE = 100 * STRING_LENGTH + 20 * 4;
+	
+	// Fields:
+
+	@Id @GeneratedValue(strategy=GenerationType.TABLE, generator="wideRowSeq")
+    private Integer id;
+
+	private String c001, c002, c003, c004, c005, c006, c007, c008, c009, c010;
+	private String c011, c012, c013, c014, c015, c016, c017, c018, c019, c020;
+	private String c021, c022, c023, c024, c025, c026, c027, c028, c029, c030;
+	private String c031, c032, c033, c034, c035, c036, c037, c038, c039, c040;
+	private String c041, c042, c043, c044, c045, c046, c047, c048, c049, c050;
+	private String c051, c052, c053, c054, c055, c056, c057, c058, c059, c060;
+	private String c061, c062, c063, c064, c065, c066, c067, c068, c069, c070;
+	private String c071, c072, c073, c074, c075, c076, c077, c078, c079, c080;
+	private String c081, c082, c083, c084, c085, c086, c087, c088, c089, c090;
+	private String c091, c092, c093, c094, c095, c096, c097, c098, c099, c100;
+
+	private int n01, n02, n03, n04, n05, n06, n07, n08, n09, n10;
+	private int n11, n12, n13, n14, n15, n16, n17, n18, n19, n20;
+
+	@Basic private int changeCount;
+
+	// Constructors:
+
+    public WideRow() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public WideRow(Test test) {
+    	// Fill the c### / n## fields (using reflection, for brevity):
+    	try {
+    		for (Field field : WideRow.class.getDeclaredFields()) {
+    			if (field.getName().matches("c\\d+")) {
+    				field.set(this, Randomizer.randomString(
+    					STRING_LENGTH, STRING_LENGTH));
+    			}
+    			else if (field.getName().matches("n\\d+")) {
+    				field.setInt(this, Randomizer.randomInt(1, 1000000));
+    			}
+    		}
+    	}
+    	catch (IllegalAccessException e) {
+    		throw new RuntimeException(e);
+    	}
+    }
+
+	// Methods:
+
+    public void load() {
+		assert c001 != null && c050 != null && c100 != null &&
+			n01 > 0 && n20 > 0;
+    }
+
+    public void update() {
+    	c001 = Randomizer.randomString(STRING_LENGTH, STRING_LENGTH);
+    	n01++;
+    	changeCount++;
+    }
+
+    @Override
+    public String toString() {
+        return c001;
+    }
+}
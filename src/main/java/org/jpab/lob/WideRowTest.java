@@ -0,0 +1,81 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.lob;
+
+import org.jpab.*;
+
+
+/**
+ * Tests using wide (122 columns) WideRow entity objects.
+ * Persist and retrieve also report bytes per second and allocation per
+ * byte moved.
+ */
+public class WideRowTest extends Test {
+
+	/**
+	 * Checks if this test includes queries.
+	 * 
+	 * @return true - if it includes queries; false - if not.
+	 */
+	@Override
+	public boolean hasQueries() {
+		return false; 
+	}
+
+    /**
+     * Gets the type of the benchmark main entity class.
+     * 
+     * @return the type of the benchmark main entity class.
+     */
+    @Override
+    protected Class getEntityClass() {
+        return WideRow.class;
+    }
+
+	/**
+	 * Gets the size of the payload (persistent data) of an entity object.
+	 * 
+	 * @return the total size of the string and int fields.
+	 */
+	@Override
+	protected int getPayloadSize() {
+		return WideRow.PAYLOAD_SIZE;
+	}
+
+	/**
+	 * Gets the name of the int field that TestEntity.update() increases.
+	 *
+	 * @return the name of the field that is increased by bulk updates.
+	 */
+	@Override
+	protected String getUpdateFieldName() {
+		return "changeCount";
+	}
+
+	/**
+	 * Creates a new entity object for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+    @Override
+    protected TestEntity newEntity() {
+        return new WideRow(this);
+    }
+}
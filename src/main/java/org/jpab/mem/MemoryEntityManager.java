@@ -0,0 +1,227 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.lang.reflect.*;
+import java.util.*;
+import javax.persistence.*;
+
+
+/**
+ * EntityManager of the in-memory provider (invocation handler of an
+ * EntityManager proxy, so it works with any JPA API version).
+ *
+ * There is no persistence context - operations are applied directly to
+ * the shared store, so clear / flush / lock are no-ops, and a transaction
+ * is only an active flag (rollback does not undo changes).
+ */
+final class MemoryEntityManager implements InvocationHandler {
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The owner factory (proxy) */
+	private final EntityManagerFactory emf;
+
+	/** The database */
+	private final MemoryStore store;
+
+	/** The transaction (proxy) */
+	private final EntityTransaction transaction;
+
+	/** Indicates an active transaction */
+	private boolean isActive;
+
+	/** Indicates an open entity manager */
+	private boolean isOpen = true;
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Creates an entity manager proxy.
+	 *
+	 * @param emf the owner factory
+	 * @param store the database
+	 * @return the new entity manager.
+	 */
+	static EntityManager create(EntityManagerFactory emf, MemoryStore store) {
+		return (EntityManager)Proxy.newProxyInstance(
+			MemoryEntityManager.class.getClassLoader(),
+			new Class<?>[] { EntityManager.class },
+			new MemoryEntityManager(emf, store));
+	}
+
+	/**
+	 * Constructs an entity manager.
+	 *
+	 * @param emf the owner factory
+	 * @param store the database
+	 */
+	private MemoryEntityManager(EntityManagerFactory emf, MemoryStore store) {
+		this.emf = emf;
+		this.store = store;
+		this.transaction = (EntityTransaction)Proxy.newProxyInstance(
+			MemoryEntityManager.class.getClassLoader(),
+			new Class<?>[] { EntityTransaction.class },
+			new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					return invokeTransaction(method.getName(), args);
+				}
+			});
+	}
+
+	//-----------------------//
+	// EntityManager Methods //
+	//-----------------------//
+
+	/**
+	 * Dispatches an EntityManager method.
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+		if (name.equals("isOpen")) {
+			return Boolean.valueOf(isOpen);
+		}
+		if (name.equals("equals")) {
+			return Boolean.valueOf(proxy == args[0]);
+		}
+		if (name.equals("hashCode")) {
+			return Integer.valueOf(System.identityHashCode(proxy));
+		}
+		if (name.equals("toString")) {
+			return "MemoryEntityManager";
+		}
+		if (!isOpen) {
+			throw new IllegalStateException("EntityManager is closed");
+		}
+		if (name.equals("persist")) {
+			store.persist(args[0]);
+			return null;
+		}
+		if (name.equals("merge")) {
+			return store.merge(args[0]);
+		}
+		if (name.equals("remove")) {
+			store.remove(args[0]);
+			return null;
+		}
+		if (name.equals("find")) {
+			return store.find((Class<?>)args[0], args[1]);
+		}
+		if (name.equals("getReference")) {
+			Object entity = store.find((Class<?>)args[0], args[1]);
+			if (entity == null) {
+				throw new EntityNotFoundException("No " + args[0] + " " + args[1]);
+			}
+			return entity;
+		}
+		if (name.equals("createQuery")) {
+			if (!(args[0] instanceof String)) {
+				throw new UnsupportedOperationException("Criteria queries");
+			}
+			return MemoryQuery.create(store, (String)args[0], args.length > 1);
+		}
+		if (name.equals("createNamedQuery")) {
+			return MemoryQuery.create(
+				store, store.getNamedQuery((String)args[0]), args.length > 1);
+		}
+		if (name.equals("contains")) {
+			return Boolean.valueOf(store.find(
+				args[0].getClass(), MemoryEntityType.get(
+					args[0].getClass()).getId(args[0])) == args[0]);
+		}
+		if (name.equals("getTransaction")) {
+			return transaction;
+		}
+		if (name.equals("getEntityManagerFactory")) {
+			return emf;
+		}
+		if (name.equals("close")) {
+			isOpen = false;
+			return null;
+		}
+		if (name.equals("clear") || name.equals("flush") ||
+				name.equals("detach") || name.equals("refresh") ||
+				name.equals("lock") || name.equals("setFlushMode") ||
+				name.equals("setProperty") || name.equals("joinTransaction")) {
+			return null; // no persistence context
+		}
+		if (name.equals("getProperties")) {
+			return new HashMap<String, Object>();
+		}
+		if (name.equals("unwrap")) {
+			if (((Class<?>)args[0]).isInstance(proxy)) {
+				return proxy;
+			}
+			throw new PersistenceException("Cannot unwrap to " + args[0]);
+		}
+		if (name.equals("getDelegate")) {
+			return proxy;
+		}
+		throw new UnsupportedOperationException("EntityManager." + name);
+	}
+
+	/**
+	 * Handles an EntityTransaction method.
+	 *
+	 * @param name the method name
+	 * @param args the method arguments
+	 * @return the method result.
+	 */
+	private Object invokeTransaction(String name, Object[] args) {
+		if (name.equals("isActive")) {
+			return Boolean.valueOf(isActive);
+		}
+		if (name.equals("begin")) {
+			if (isActive) {
+				throw new IllegalStateException("Transaction is already active");
+			}
+			isActive = true;
+			return null;
+		}
+		if (name.equals("commit") || name.equals("rollback")) {
+			if (!isActive) {
+				throw new IllegalStateException("Transaction is not active");
+			}
+			isActive = false;
+			return null;
+		}
+		if (name.equals("setRollbackOnly")) {
+			return null;
+		}
+		if (name.equals("getRollbackOnly")) {
+			return Boolean.FALSE;
+		}
+		if (name.equals("equals")) {
+			return Boolean.valueOf(transaction == args[0]);
+		}
+		if (name.equals("hashCode")) {
+			return Integer.valueOf(System.identityHashCode(transaction));
+		}
+		if (name.equals("toString")) {
+			return "MemoryTransaction";
+		}
+		throw new UnsupportedOperationException("EntityTransaction." + name);
+	}
+}
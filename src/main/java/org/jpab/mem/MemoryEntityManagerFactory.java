@@ -0,0 +1,172 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.lang.reflect.*;
+import java.util.*;
+import javax.persistence.*;
+
+
+/**
+ * EntityManagerFactory of the in-memory provider (invocation handler of an
+ * EntityManagerFactory proxy, so it works with any JPA API version).
+ */
+final class MemoryEntityManagerFactory implements InvocationHandler {
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The database */
+	private final MemoryStore store;
+
+	/** The persistence unit properties */
+	private final Map<String, Object> properties;
+
+	/** The factory (proxy) */
+	private EntityManagerFactory emf;
+
+	/** The shared cache (proxy) - always empty */
+	private Object cache;
+
+	/** The persistence unit utility (proxy) */
+	private Object util;
+
+	/** Indicates an open factory */
+	private boolean isOpen = true;
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Creates an entity manager factory proxy.
+	 *
+	 * @param store the database
+	 * @param properties the persistence unit properties
+	 * @return the new factory.
+	 */
+	static EntityManagerFactory create(
+			MemoryStore store, Map<String, Object> properties) {
+		MemoryEntityManagerFactory handler =
+			new MemoryEntityManagerFactory(store, properties);
+		handler.emf = (EntityManagerFactory)newProxy(
+			EntityManagerFactory.class, handler);
+		return handler.emf;
+	}
+
+	/**
+	 * Constructs an entity manager factory.
+	 *
+	 * @param store the database
+	 * @param properties the persistence unit properties
+	 */
+	private MemoryEntityManagerFactory(
+			MemoryStore store, Map<String, Object> properties) {
+		this.store = store;
+		this.properties = properties;
+	}
+
+	//------------------------------//
+	// EntityManagerFactory Methods //
+	//------------------------------//
+
+	/**
+	 * Dispatches an EntityManagerFactory method.
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+		if (name.equals("isOpen")) {
+			return Boolean.valueOf(isOpen);
+		}
+		if (name.equals("close")) {
+			isOpen = false; // the store is kept for the next factory
+			return null;
+		}
+		if (name.equals("equals")) {
+			return Boolean.valueOf(proxy == args[0]);
+		}
+		if (name.equals("hashCode")) {
+			return Integer.valueOf(System.identityHashCode(proxy));
+		}
+		if (name.equals("toString")) {
+			return "MemoryEntityManagerFactory";
+		}
+		if (!isOpen) {
+			throw new IllegalStateException("EntityManagerFactory is closed");
+		}
+		if (name.equals("createEntityManager")) {
+			return MemoryEntityManager.create(emf, store);
+		}
+		if (name.equals("getProperties")) {
+			return properties;
+		}
+		if (name.equals("getCache")) {
+			if (cache == null) {
+				cache = newProxy(method.getReturnType(), new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return method.getName().equals("contains") ?
+							Boolean.FALSE : null; // evict methods are no-ops
+					}
+				});
+			}
+			return cache;
+		}
+		if (name.equals("getPersistenceUnitUtil")) {
+			if (util == null) {
+				util = newProxy(method.getReturnType(), new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getIdentifier")) {
+							return MemoryEntityType.get(
+								args[0].getClass()).getId(args[0]);
+						}
+						return Boolean.TRUE; // isLoaded - always loaded
+					}
+				});
+			}
+			return util;
+		}
+		if (name.equals("addNamedQuery")) {
+			throw new UnsupportedOperationException("addNamedQuery");
+		}
+		if (name.equals("unwrap")) {
+			if (((Class<?>)args[0]).isInstance(proxy)) {
+				return proxy;
+			}
+			throw new PersistenceException("Cannot unwrap to " + args[0]);
+		}
+		throw new UnsupportedOperationException(
+			"EntityManagerFactory." + name);
+	}
+
+	/**
+	 * Creates a proxy of a specified interface.
+	 *
+	 * @param type the interface
+	 * @param handler the invocation handler
+	 * @return the new proxy.
+	 */
+	private static Object newProxy(Class<?> type, InvocationHandler handler) {
+		return Proxy.newProxyInstance(
+			MemoryEntityManagerFactory.class.getClassLoader(),
+			new Class<?>[] { type }, handler);
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.persistence.*;
+
+
+/**
+ * Reflection based metadata of an entity class (for the in-memory provider).
+ */
+final class MemoryEntityType {
+
+	//-------------//
+	// Static Data //
+	//-------------//
+
+	/** Metadata per entity class (built on first use) */
+	private static final ConcurrentMap<Class<?>, MemoryEntityType> typeMap =
+		new ConcurrentHashMap<Class<?>, MemoryEntityType>();
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The entity class */
+	private final Class<?> entityClass;
+
+	/** The hierarchy root entity class (that holds the id space) */
+	private final Class<?> rootClass;
+
+	/** The entity name (as used in queries) */
+	private final String entityName;
+
+	/** The primary key field */
+	private final Field idField;
+
+	/** Indicates if the primary key is generated (@GeneratedValue) */
+	private final boolean isGenerated;
+
+	/** Persistent fields by name (including superclass fields) */
+	private final Map<String, Field> fieldMap = new HashMap<String, Field>();
+
+	/** Relationship fields with cascaded persist */
+	private final List<Field> persistCascades = new ArrayList<Field>();
+
+	/** Relationship fields with cascaded merge */
+	private final List<Field> mergeCascades = new ArrayList<Field>();
+
+	/** Relationship fields with cascaded remove */
+	private final List<Field> removeCascades = new ArrayList<Field>();
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Gets the metadata of a specified entity class.
+	 *
+	 * @param entityClass the entity class
+	 * @return the metadata.
+	 */
+	static MemoryEntityType get(Class<?> entityClass) {
+		MemoryEntityType type = typeMap.get(entityClass);
+		if (type == null) {
+			typeMap.putIfAbsent(entityClass, new MemoryEntityType(entityClass));
+			type = typeMap.get(entityClass);
+		}
+		return type;
+	}
+
+	/**
+	 * Constructs the metadata of an entity class.
+	 *
+	 * @param entityClass the entity class
+	 */
+	private MemoryEntityType(Class<?> entityClass) {
+		Entity entity = entityClass.getAnnotation(Entity.class);
+		if (entity == null) {
+			throw new IllegalArgumentException(
+				entityClass.getName() + " is not an entity class");
+		}
+		this.entityClass = entityClass;
+		this.entityName = (entity.name().length() > 0) ?
+			entity.name() : entityClass.getSimpleName();
+
+		// Find the root entity class:
+		Class<?> root = entityClass;
+		for (Class<?> cls = entityClass.getSuperclass(); cls != null;
+				cls = cls.getSuperclass()) {
+			if (cls.isAnnotationPresent(Entity.class)) {
+				root = cls;
+			}
+		}
+		this.rootClass = root;
+
+		// Collect the persistent fields (subclass fields hide superclass ones):
+		Field id = null;
+		boolean generated = false;
+		for (Class<?> cls = entityClass; cls != Object.class;
+				cls = cls.getSuperclass()) {
+			for (Field field : cls.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) ||
+						Modifier.isTransient(modifiers) ||
+						field.isAnnotationPresent(Transient.class) ||
+						fieldMap.containsKey(field.getName())) {
+					continue;
+				}
+				field.setAccessible(true);
+				fieldMap.put(field.getName(), field);
+				if (field.isAnnotationPresent(Id.class)) {
+					id = field;
+					generated = field.isAnnotationPresent(GeneratedValue.class);
+				}
+				addCascades(field);
+			}
+		}
+		if (id == null) {
+			throw new IllegalArgumentException(
+				"No @Id field in " + entityClass.getName());
+		}
+		this.idField = id;
+		this.isGenerated = generated;
+	}
+
+	/**
+	 * Registers the cascade settings of a relationship field.
+	 *
+	 * @param field a persistent field
+	 */
+	private void addCascades(Field field) {
+		CascadeType[] cascades;
+		if (field.isAnnotationPresent(ManyToOne.class)) {
+			cascades = field.getAnnotation(ManyToOne.class).cascade();
+		}
+		else if (field.isAnnotationPresent(OneToOne.class)) {
+			cascades = field.getAnnotation(OneToOne.class).cascade();
+		}
+		else if (field.isAnnotationPresent(OneToMany.class)) {
+			cascades = field.getAnnotation(OneToMany.class).cascade();
+		}
+		else if (field.isAnnotationPresent(ManyToMany.class)) {
+			cascades = field.getAnnotation(ManyToMany.class).cascade();
+		}
+		else {
+			return; // not a relationship
+		}
+		for (CascadeType cascade : cascades) {
+			if (cascade == CascadeType.ALL || cascade == CascadeType.PERSIST) {
+				persistCascades.add(field);
+			}
+			if (cascade == CascadeType.ALL || cascade == CascadeType.MERGE) {
+				mergeCascades.add(field);
+			}
+			if (cascade == CascadeType.ALL || cascade == CascadeType.REMOVE) {
+				removeCascades.add(field);
+			}
+		}
+	}
+
+	//------------//
+	// Properties //
+	//------------//
+
+	Class<?> getEntityClass() {
+		return entityClass;
+	}
+
+	Class<?> getRootClass() {
+		return rootClass;
+	}
+
+	String getEntityName() {
+		return entityName;
+	}
+
+	boolean isGenerated() {
+		return isGenerated;
+	}
+
+	String getIdName() {
+		return idField.getName();
+	}
+
+	List<Field> getPersistCascades() {
+		return persistCascades;
+	}
+
+	List<Field> getMergeCascades() {
+		return mergeCascades;
+	}
+
+	List<Field> getRemoveCascades() {
+		return removeCascades;
+	}
+
+	Collection<Field> getFields() {
+		return fieldMap.values();
+	}
+
+	//-------------//
+	// Field Access //
+	//-------------//
+
+	/**
+	 * Gets the primary key of an entity object.
+	 *
+	 * @param entity the entity object
+	 * @return the primary key (or null if not set yet).
+	 */
+	Object getId(Object entity) {
+		return getValue(idField, entity);
+	}
+
+	/**
+	 * Sets the primary key of an entity object.
+	 *
+	 * @param entity the entity object
+	 * @param id the primary key
+	 */
+	void setId(Object entity, Object id) {
+		setValue(idField, entity, id);
+	}
+
+	/**
+	 * Gets the value of a named persistent field.
+	 *
+	 * @param entity the entity object
+	 * @param fieldName the field name
+	 * @return the field value.
+	 */
+	Object getFieldValue(Object entity, String fieldName) {
+		return getValue(getField(fieldName), entity);
+	}
+
+	/**
+	 * Sets the value of a named persistent field (converting numbers).
+	 *
+	 * @param entity the entity object
+	 * @param fieldName the field name
+	 * @param value the new value
+	 */
+	void setFieldValue(Object entity, String fieldName, Object value) {
+		Field field = getField(fieldName);
+		if (value instanceof Number) {
+			Class<?> type = field.getType();
+			Number number = (Number)value;
+			if (type == int.class || type == Integer.class) {
+				value = Integer.valueOf(number.intValue());
+			}
+			else if (type == long.class || type == Long.class) {
+				value = Long.valueOf(number.longValue());
+			}
+			else if (type == double.class || type == Double.class) {
+				value = Double.valueOf(number.doubleValue());
+			}
+		}
+		setValue(field, entity, value);
+	}
+
+	/**
+	 * Gets a persistent field by name.
+	 *
+	 * @param fieldName the field name
+	 * @return the field.
+	 */
+	private Field getField(String fieldName) {
+		Field field = fieldMap.get(fieldName);
+		if (field == null) {
+			throw new IllegalArgumentException("Unknown field " + fieldName +
+				" in entity " + entityName);
+		}
+		return field;
+	}
+
+	/**
+	 * Gets a field value (wrapping reflection exceptions).
+	 *
+	 * @param field the field
+	 * @param entity the entity object
+	 * @return the field value.
+	 */
+	static Object getValue(Field field, Object entity) {
+		try {
+			return field.get(entity);
+		}
+		catch (IllegalAccessException e) {
+			throw new PersistenceException("Failed to read " + field, e);
+		}
+	}
+
+	/**
+	 * Sets a field value (wrapping reflection exceptions).
+	 *
+	 * @param field the field
+	 * @param entity the entity object
+	 * @param value the new value
+	 */
+	static void setValue(Field field, Object entity, Object value) {
+		try {
+			field.set(entity, value);
+		}
+		catch (IllegalAccessException e) {
+			throw new PersistenceException("Failed to write " + field, e);
+		}
+	}
+
+	//---------------//
+	// Id Generation //
+	//---------------//
+
+	/**
+	 * Converts a generated sequence number to the primary key type.
+	 *
+	 * @param value the sequence number
+	 * @return the primary key (a random UUID string for a String key).
+	 */
+	Object toId(long value) {
+		Class<?> type = idField.getType();
+		if (type == Integer.class || type == int.class) {
+			return Integer.valueOf((int)value);
+		}
+		if (type == String.class) {
+			return UUID.randomUUID().toString();
+		}
+		return Long.valueOf(value);
+	}
+}
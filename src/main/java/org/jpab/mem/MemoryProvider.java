@@ -0,0 +1,283 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import javax.persistence.*;
+import javax.persistence.spi.*;
+
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
+
+
+/**
+ * In-memory JPA provider - a baseline for measuring the benchmark overhead.
+ *
+ * Entity objects are kept in concurrent maps (see MemoryStore) and queries
+ * are evaluated by scanning them (see MemoryQuery), so results against
+ * this provider show the cost of the benchmark itself (inventory, random
+ * data, query strings, counters), which can be subtracted from the results
+ * of real providers. It also enables offline runs of the whole benchmark.
+ *
+ * Registered in META-INF/services, and selected by the persistence unit
+ * provider element (see config/jpa/memory/benchmark.properties).
+ */
+public class MemoryProvider implements PersistenceProvider {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Location of persistence unit definitions */
+	private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+
+	//------------------//
+	// Factory Creation //
+	//------------------//
+
+	/**
+	 * Creates an entity manager factory for a persistence unit that
+	 * specifies this provider.
+	 *
+	 * @param puName the persistence unit name
+	 * @param map additional properties (or null)
+	 * @return the new factory (or null for other persistence units).
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public EntityManagerFactory createEntityManagerFactory(
+			String puName, Map map) {
+		ClassLoader loader = MemoryProvider.class.getClassLoader();
+		try {
+			Enumeration<URL> urls = loader.getResources(PERSISTENCE_XML);
+			while (urls.hasMoreElements()) {
+				UnitHandler unit = new UnitHandler(puName);
+				parse(urls.nextElement(), unit);
+				if (!unit.isFound) {
+					continue; // try the next persistence.xml
+				}
+				if (!MemoryProvider.class.getName().equals(
+						unit.provider.toString().trim())) {
+					return null; // another provider's unit
+				}
+
+				// Prepare the database:
+				MemoryStore store = MemoryStore.get(puName);
+				for (String className : unit.classNames) {
+					store.addEntityClass(Class.forName(className, true, loader));
+				}
+				for (String mappingFile : unit.mappingFiles) {
+					URL url = loader.getResource(mappingFile);
+					if (url != null) {
+						parse(url, new MappingHandler(store));
+					}
+				}
+				Map<String, Object> properties =
+					new HashMap<String, Object>(unit.properties);
+				if (map != null) {
+					properties.putAll(map);
+				}
+				return MemoryEntityManagerFactory.create(store, properties);
+			}
+			return null; // unknown persistence unit
+		}
+		catch (Exception e) {
+			throw new PersistenceException(
+				"Failed to create persistence unit " + puName, e);
+		}
+	}
+
+	/**
+	 * Not supported (container managed persistence units).
+	 */
+	@SuppressWarnings("rawtypes")
+	public EntityManagerFactory createContainerEntityManagerFactory(
+			PersistenceUnitInfo info, Map map) {
+		throw new UnsupportedOperationException(
+			"Container managed persistence units");
+	}
+
+	/**
+	 * Gets the load state utility (everything is always loaded).
+	 *
+	 * @return the utility.
+	 */
+	public ProviderUtil getProviderUtil() {
+		return new ProviderUtil() {
+			public LoadState isLoadedWithoutReference(Object e, String a) {
+				return LoadState.UNKNOWN;
+			}
+			public LoadState isLoadedWithReference(Object e, String a) {
+				return LoadState.UNKNOWN;
+			}
+			public LoadState isLoaded(Object e) {
+				return LoadState.UNKNOWN;
+			}
+		};
+	}
+
+	/**
+	 * Schema generation (JPA 2.1) - there is no schema.
+	 */
+	@SuppressWarnings("rawtypes")
+	public void generateSchema(PersistenceUnitInfo info, Map map) {
+	}
+
+	/**
+	 * Schema generation (JPA 2.1) - there is no schema.
+	 */
+	@SuppressWarnings("rawtypes")
+	public boolean generateSchema(String puName, Map map) {
+		return false;
+	}
+
+	//-------------//
+	// XML Parsing //
+	//-------------//
+
+	/**
+	 * Parses an XML resource.
+	 *
+	 * @param url the resource
+	 * @param handler the SAX handler
+	 */
+	private static void parse(URL url, DefaultHandler handler)
+			throws IOException, SAXException {
+		XMLReader parser = XMLReaderFactory.createXMLReader();
+		parser.setContentHandler(handler);
+		InputStream in = url.openStream();
+		try {
+			parser.parse(new InputSource(in));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Collects the definition of a persistence unit from persistence.xml.
+	 */
+	private static final class UnitHandler extends DefaultHandler {
+
+		/** The requested persistence unit name */
+		private final String puName;
+
+		/** Indicates if the requested persistence unit is found */
+		boolean isFound;
+
+		/** Indicates parsing of the requested persistence unit */
+		private boolean isInUnit;
+
+		/** The unit elements */
+		final StringBuilder provider = new StringBuilder();
+		final List<String> classNames = new ArrayList<String>();
+		final List<String> mappingFiles = new ArrayList<String>();
+		final Map<String, String> properties = new HashMap<String, String>();
+
+		/** Text of the current element */
+		private final StringBuilder text = new StringBuilder();
+
+		UnitHandler(String puName) {
+			this.puName = puName;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String name,
+				Attributes attributes) {
+			text.setLength(0);
+			if ("persistence-unit".equals(name)) {
+				isInUnit = puName.equals(attributes.getValue("name"));
+				isFound |= isInUnit;
+			}
+			else if (isInUnit && "property".equals(name)) {
+				properties.put(attributes.getValue("name"),
+					attributes.getValue("value"));
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String name) {
+			if (!isInUnit) {
+				return;
+			}
+			if ("provider".equals(name)) {
+				provider.append(text);
+			}
+			else if ("class".equals(name)) {
+				classNames.add(text.toString().trim());
+			}
+			else if ("mapping-file".equals(name)) {
+				mappingFiles.add(text.toString().trim());
+			}
+			else if ("persistence-unit".equals(name)) {
+				isInUnit = false;
+			}
+		}
+	}
+
+	/**
+	 * Registers the named queries of a mapping (orm.xml) file.
+	 */
+	private static final class MappingHandler extends DefaultHandler {
+
+		/** The database */
+		private final MemoryStore store;
+
+		/** The name of the current named query */
+		private String queryName;
+
+		/** Text of the current element */
+		private final StringBuilder text = new StringBuilder();
+
+		MappingHandler(MemoryStore store) {
+			this.store = store;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String name,
+				Attributes attributes) {
+			text.setLength(0);
+			if ("named-query".equals(name)) {
+				queryName = attributes.getValue("name");
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String name) {
+			if ("query".equals(name) && queryName != null) {
+				store.addNamedQuery(queryName, text.toString().trim());
+			}
+			else if ("named-query".equals(name)) {
+				queryName = null;
+			}
+		}
+	}
+}
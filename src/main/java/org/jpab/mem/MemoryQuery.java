@@ -0,0 +1,1471 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.regex.*;
+import javax.persistence.*;
+
+
+/**
+ * Query of the in-memory provider (invocation handler of a Query proxy).
+ *
+ * Supports the JPQL subset that the benchmark uses: SELECT (including
+ * DISTINCT, projections, aggregates, SELECT NEW, GROUP BY, HAVING and
+ * ORDER BY), UPDATE and DELETE of a single entity range variable.
+ * JOIN FETCH clauses are ignored (relationships are always loaded).
+ * A parsed query is immutable and is shared by all the Query instances
+ * of the same query string (see MemoryStore.getQuery), which hold the
+ * parameters and the pagination.
+ */
+final class MemoryQuery {
+
+	//-------//
+	// Types //
+	//-------//
+
+	/** Statement types */
+	private enum StatementType { SELECT, UPDATE, DELETE }
+
+	/** Query evaluation context - an entity object or a group of them */
+	private static final class Row {
+		final Object entity;
+		final List<Object> group;
+		final Map<Object, Object> parameters;
+		Row(Object entity, List<Object> group, Map<Object, Object> parameters) {
+			this.entity = entity;
+			this.group = group;
+			this.parameters = parameters;
+		}
+	}
+
+	//----------------//
+	// Query Instance //
+	//----------------//
+
+	/** A Query instance (invocation handler of a Query proxy) */
+	private static final class QueryHandler implements InvocationHandler {
+
+		/** The parsed (shared) query */
+		private final MemoryQuery query;
+
+		/** Parameter values by name (String) or by position (Integer) */
+		private final Map<Object, Object> parameterMap =
+			new HashMap<Object, Object>();
+
+		/** Pagination */
+		private int firstResult = 0;
+		private int maxResults = Integer.MAX_VALUE;
+
+		QueryHandler(MemoryQuery query) {
+			this.query = query;
+		}
+
+		/**
+		 * Dispatches a Query / TypedQuery method.
+		 */
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if (name.equals("getResultList")) {
+				return query.getResultList(parameterMap, firstResult, maxResults);
+			}
+			if (name.equals("getSingleResult")) {
+				List<Object> results =
+					query.getResultList(parameterMap, firstResult, maxResults);
+				if (results.isEmpty()) {
+					throw new NoResultException("No result: " + query.ql);
+				}
+				if (results.size() > 1) {
+					throw new NonUniqueResultException(
+						"Multiple results: " + query.ql);
+				}
+				return results.get(0);
+			}
+			if (name.equals("getResultStream")) {
+				return List.class.getMethod("stream").invoke(
+					query.getResultList(parameterMap, firstResult, maxResults));
+			}
+			if (name.equals("executeUpdate")) {
+				return Integer.valueOf(query.executeUpdate(parameterMap));
+			}
+			if (name.equals("setParameter")) {
+				if (args[0] instanceof String || args[0] instanceof Integer) {
+					parameterMap.put(args[0], args[1]);
+					return proxy;
+				}
+			}
+			else if (name.equals("setMaxResults")) {
+				maxResults = ((Integer)args[0]).intValue();
+				return proxy;
+			}
+			else if (name.equals("setFirstResult")) {
+				firstResult = ((Integer)args[0]).intValue();
+				return proxy;
+			}
+			else if (name.equals("getMaxResults")) {
+				return Integer.valueOf(maxResults);
+			}
+			else if (name.equals("getFirstResult")) {
+				return Integer.valueOf(firstResult);
+			}
+			else if (name.equals("setHint") || name.equals("setFlushMode") ||
+					name.equals("setLockMode")) {
+				return proxy; // ignored
+			}
+			else if (name.equals("getHints")) {
+				return new HashMap<String, Object>();
+			}
+			else if (name.equals("unwrap")) {
+				if (((Class<?>)args[0]).isInstance(proxy)) {
+					return proxy;
+				}
+				throw new PersistenceException("Cannot unwrap to " + args[0]);
+			}
+			else if (name.equals("equals")) {
+				return Boolean.valueOf(proxy == args[0]);
+			}
+			else if (name.equals("hashCode")) {
+				return Integer.valueOf(System.identityHashCode(proxy));
+			}
+			else if (name.equals("toString")) {
+				return "MemoryQuery: " + query.ql;
+			}
+			throw new UnsupportedOperationException("Query." + name);
+		}
+	}
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** The database */
+	private final MemoryStore store;
+
+	/** The query string */
+	private final String ql;
+
+	/** The query tokens (during parsing) */
+	private final List<String> tokens;
+
+	/** Index of the next token (during parsing) */
+	private int pos;
+
+	// Parsed statement:
+
+	/** The statement type */
+	private StatementType statementType;
+
+	/** Indicates a SELECT DISTINCT query */
+	private boolean isDistinct;
+
+	/** The SELECT clause expressions */
+	private final List<Expr> selectList = new ArrayList<Expr>();
+
+	/** Indicates if the query includes aggregate expressions */
+	private boolean hasAggregates;
+
+	/** The metadata of the range variable entity class */
+	private MemoryEntityType entityType;
+
+	/** The range variable (alias) name */
+	private String alias;
+
+	/** The WHERE clause condition (or null) */
+	private Expr where;
+
+	/** The GROUP BY expressions (or null) */
+	private List<Expr> groupByList;
+
+	/** The HAVING clause condition (or null) */
+	private Expr having;
+
+	/** The ORDER BY expressions (or null) */
+	private List<Expr> orderByList;
+
+	/** Descending flags of the ORDER BY expressions */
+	private final List<Boolean> descendingList = new ArrayList<Boolean>();
+
+	/** The UPDATE SET target paths and new values */
+	private final List<PathExpr> setPathList = new ArrayList<PathExpr>();
+	private final List<Expr> setValueList = new ArrayList<Expr>();
+
+	// Primary key access path (from the WHERE clause):
+
+	/** Primary key IN list (or null) */
+	private List<Expr> keyList;
+
+	/** Primary key lower / upper bounds (or null) */
+	private Expr lowKey, highKey;
+	private boolean isLowInclusive, isHighInclusive;
+
+	/** Indicates an ORDER BY of the primary key (the table order) */
+	private boolean isKeyOrder;
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Creates a query proxy (the query string is parsed on first use).
+	 *
+	 * @param store the database
+	 * @param ql the JPQL query string
+	 * @param isTyped true - to return a TypedQuery; false - a Query
+	 * @return the new query.
+	 */
+	static Query create(MemoryStore store, String ql, boolean isTyped) {
+		return (Query)Proxy.newProxyInstance(
+			MemoryQuery.class.getClassLoader(),
+			new Class<?>[] { isTyped ? TypedQuery.class : Query.class },
+			new QueryHandler(store.getQuery(ql)));
+	}
+
+	/**
+	 * Constructs and parses a query.
+	 *
+	 * @param store the database
+	 * @param ql the JPQL query string
+	 */
+	MemoryQuery(MemoryStore store, String ql) {
+		this.store = store;
+		this.ql = ql;
+		this.tokens = tokenize(ql);
+		try {
+			parseStatement();
+		}
+		catch (RuntimeException e) {
+			throw new IllegalArgumentException(
+				"Unsupported query: " + ql + " (" + e.getMessage() + ")", e);
+		}
+		analyzeKeyAccess();
+	}
+
+	//-----------//
+	// Execution //
+	//-----------//
+
+	/**
+	 * Executes a SELECT query.
+	 *
+	 * @param parameters the parameter values (by name or position)
+	 * @param firstResult number of results to skip
+	 * @param maxResults maximum number of results to return
+	 * @return the query results.
+	 */
+	private List<Object> getResultList(Map<Object, Object> parameters,
+			int firstResult, int maxResults) {
+		if (statementType != StatementType.SELECT) {
+			throw new IllegalStateException("Not a SELECT query: " + ql);
+		}
+
+		// Collect the matching entity objects:
+		boolean isGrouped = hasAggregates || groupByList != null;
+		boolean isSorted = orderByList != null && !isKeyOrder;
+		long limit = (isGrouped || isSorted || isDistinct) ? Long.MAX_VALUE :
+			(long)firstResult + maxResults;
+		List<Object> matchList = getMatches(limit, parameters);
+
+		// Build the result rows (per entity object or per group):
+		List<Row> rowList = new ArrayList<Row>(matchList.size());
+		if (isGrouped) {
+			Map<List<Object>, List<Object>> groupMap =
+				new LinkedHashMap<List<Object>, List<Object>>();
+			if (groupByList == null) {
+				groupMap.put(Collections.emptyList(), matchList);
+			}
+			else {
+				for (Object entity : matchList) {
+					Row row = new Row(entity, null, parameters);
+					List<Object> key = new ArrayList<Object>(groupByList.size());
+					for (Expr expr : groupByList) {
+						key.add(expr.eval(row));
+					}
+					List<Object> group = groupMap.get(key);
+					if (group == null) {
+						group = new ArrayList<Object>();
+						groupMap.put(key, group);
+					}
+					group.add(entity);
+				}
+			}
+			for (List<Object> group : groupMap.values()) {
+				Row row = new Row(
+					group.isEmpty() ? null : group.get(0), group, parameters);
+				if (having == null || isTrue(having.eval(row))) {
+					rowList.add(row);
+				}
+			}
+		}
+		else {
+			for (Object entity : matchList) {
+				rowList.add(new Row(entity, null, parameters));
+			}
+		}
+
+		// Sort the rows:
+		if (isSorted) {
+			Collections.sort(rowList, new Comparator<Row>() {
+				public int compare(Row row1, Row row2) {
+					for (int i = 0; i < orderByList.size(); i++) {
+						Expr expr = orderByList.get(i);
+						int result = compareValues(expr.eval(row1), expr.eval(row2));
+						if (result != 0) {
+							return descendingList.get(i).booleanValue() ?
+								-result : result;
+						}
+					}
+					return 0;
+				}
+			});
+		}
+
+		// Project the rows and apply DISTINCT and pagination:
+		Set<Object> distinctSet = isDistinct ? new HashSet<Object>() : null;
+		List<Object> resultList = new ArrayList<Object>();
+		int skipCount = firstResult;
+		for (Row row : rowList) {
+			Object result;
+			if (selectList.size() == 1) {
+				result = selectList.get(0).eval(row);
+			}
+			else {
+				Object[] values = new Object[selectList.size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = selectList.get(i).eval(row);
+				}
+				result = values;
+			}
+			if (distinctSet != null && !distinctSet.add((result instanceof Object[]) ?
+					Arrays.asList((Object[])result) : result)) {
+				continue; // a duplicate
+			}
+			if (skipCount > 0) {
+				skipCount--;
+				continue;
+			}
+			if (resultList.size() >= maxResults) {
+				break;
+			}
+			resultList.add(result);
+		}
+		return resultList;
+	}
+
+	/**
+	 * Executes an UPDATE or DELETE query.
+	 *
+	 * @param parameters the parameter values (by name or position)
+	 * @return number of updated / deleted entity objects.
+	 */
+	private int executeUpdate(Map<Object, Object> parameters) {
+		if (statementType == StatementType.SELECT) {
+			throw new IllegalStateException("Not an UPDATE/DELETE query: " + ql);
+		}
+		List<Object> matchList = getMatches(Long.MAX_VALUE, parameters);
+		for (Object entity : matchList) {
+			if (statementType == StatementType.DELETE) {
+				store.remove(entity, false); // no cascade in bulk delete
+				continue;
+			}
+			Row row = new Row(entity, null, parameters);
+			Object[] values = new Object[setValueList.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = setValueList.get(i).eval(row);
+			}
+			for (int i = 0; i < values.length; i++) {
+				setPathList.get(i).set(row, values[i]);
+			}
+		}
+		return matchList.size();
+	}
+
+	/**
+	 * Gets the entity objects that match the WHERE clause.
+	 *
+	 * @param limit maximum number of entity objects to collect
+	 * @param parameters the parameter values (by name or position)
+	 * @return the matching entity objects (in primary key order).
+	 */
+	private List<Object> getMatches(long limit, Map<Object, Object> parameters) {
+		List<Object> matchList = new ArrayList<Object>();
+		Class<?> entityClass = entityType.getEntityClass();
+		for (Object entity : getCandidates(parameters)) {
+			if (entityClass.isInstance(entity) && (where == null ||
+					isTrue(where.eval(new Row(entity, null, parameters))))) {
+				matchList.add(entity);
+				if (matchList.size() >= limit) {
+					break;
+				}
+			}
+		}
+		return matchList;
+	}
+
+	/**
+	 * Gets the candidate entity objects - by the primary key access path
+	 * of the WHERE clause (if any) or by a full scan.
+	 *
+	 * @param parameters the parameter values (by name or position)
+	 * @return the candidate entity objects (in primary key order).
+	 */
+	private Collection<Object> getCandidates(Map<Object, Object> parameters) {
+		NavigableMap<Object, Object> table = store.getTable(entityType);
+		Class<?> keyClass = table.isEmpty() ? null : table.firstKey().getClass();
+		Row constantRow = new Row(null, null, parameters);
+
+		// Primary key lookups:
+		if (keyList != null) {
+			Set<Object> keySet = new TreeSet<Object>();
+			for (Object value : evalList(keyList, constantRow)) {
+				Object key = MemoryStore.toKey(value);
+				if (key != null && key.getClass() == keyClass) {
+					keySet.add(key);
+				}
+			}
+			List<Object> list = new ArrayList<Object>(keySet.size());
+			for (Object key : keySet) {
+				Object entity = table.get(key);
+				if (entity != null) {
+					list.add(entity);
+				}
+			}
+			return list;
+		}
+
+		// Primary key range:
+		Object low = (lowKey != null) ?
+			MemoryStore.toKey(lowKey.eval(constantRow)) : null;
+		Object high = (highKey != null) ?
+			MemoryStore.toKey(highKey.eval(constantRow)) : null;
+		if (low != null && low.getClass() == keyClass) {
+			if (high != null && high.getClass() == keyClass) {
+				if (compareValues(low, high) > 0) {
+					return Collections.emptyList();
+				}
+				return table.subMap(
+					low, isLowInclusive, high, isHighInclusive).values();
+			}
+			return table.tailMap(low, isLowInclusive).values();
+		}
+		if (high != null && high.getClass() == keyClass) {
+			return table.headMap(high, isHighInclusive).values();
+		}
+		return table.values();
+	}
+
+	/**
+	 * Detects primary key conditions in the top level conjunction of the
+	 * WHERE clause (the full condition is still evaluated on every match).
+	 */
+	private void analyzeKeyAccess() {
+		List<Expr> conjuncts = new ArrayList<Expr>();
+		addConjuncts(where, conjuncts);
+		for (Expr expr : conjuncts) {
+			if (expr instanceof CompareExpr) {
+				CompareExpr compare = (CompareExpr)expr;
+				if (!isKeyPath(compare.left) || !compare.right.isConstant()) {
+					continue;
+				}
+				String op = compare.op;
+				if (op.equals("=") || op.startsWith(">")) {
+					if (lowKey == null) {
+						lowKey = compare.right;
+						isLowInclusive = !op.equals(">");
+					}
+				}
+				if (op.equals("=") || op.startsWith("<") && !op.equals("<>")) {
+					if (highKey == null) {
+						highKey = compare.right;
+						isHighInclusive = !op.equals("<");
+					}
+				}
+			}
+			else if (expr instanceof BetweenExpr) {
+				BetweenExpr between = (BetweenExpr)expr;
+				if (!between.isNot && isKeyPath(between.value) &&
+						between.low.isConstant() && between.high.isConstant() &&
+						lowKey == null && highKey == null) {
+					lowKey = between.low;
+					highKey = between.high;
+					isLowInclusive = isHighInclusive = true;
+				}
+			}
+			else if (expr instanceof InExpr) {
+				InExpr in = (InExpr)expr;
+				boolean isConstant = true;
+				for (Expr item : in.items) {
+					isConstant &= item.isConstant();
+				}
+				if (!in.isNot && isKeyPath(in.value) && isConstant) {
+					keyList = in.items;
+				}
+			}
+		}
+		isKeyOrder = orderByList != null && orderByList.size() == 1 &&
+			isKeyPath(orderByList.get(0)) &&
+			!descendingList.get(0).booleanValue() &&
+			!hasAggregates && groupByList == null;
+	}
+
+	/**
+	 * Collects the top level conjuncts of a condition.
+	 *
+	 * @param expr a condition (or null)
+	 * @param conjuncts a list to be filled with the conjuncts
+	 */
+	private static void addConjuncts(Expr expr, List<Expr> conjuncts) {
+		if (expr instanceof LogicalExpr && ((LogicalExpr)expr).isAnd) {
+			addConjuncts(((LogicalExpr)expr).left, conjuncts);
+			addConjuncts(((LogicalExpr)expr).right, conjuncts);
+		}
+		else if (expr != null) {
+			conjuncts.add(expr);
+		}
+	}
+
+	/**
+	 * Checks if an expression is the primary key path (e.g. "o.id").
+	 *
+	 * @param expr an expression
+	 * @return true - if it is the primary key path; false - if not.
+	 */
+	private boolean isKeyPath(Expr expr) {
+		return expr instanceof PathExpr &&
+			((PathExpr)expr).fields.length == 1 &&
+			((PathExpr)expr).fields[0].equals(entityType.getIdName());
+	}
+
+	//---------//
+	// Parsing //
+	//---------//
+
+	/**
+	 * Parses the query string.
+	 */
+	private void parseStatement() {
+		if (accept("SELECT")) {
+			statementType = StatementType.SELECT;
+			isDistinct = accept("DISTINCT");
+			int selectPos = pos;
+			while (!peek("FROM")) {
+				next(); // skipped for now (the alias is unknown yet)
+			}
+			parseFrom();
+			int endPos = pos;
+			pos = selectPos;
+			do {
+				selectList.add(parseSelectItem());
+			} while (accept(","));
+			pos = endPos;
+			parseWhere();
+			if (accept("GROUP")) {
+				expect("BY");
+				groupByList = new ArrayList<Expr>();
+				do {
+					groupByList.add(parseExpr());
+				} while (accept(","));
+			}
+			if (accept("HAVING")) {
+				having = parseCondition();
+			}
+			if (accept("ORDER")) {
+				expect("BY");
+				orderByList = new ArrayList<Expr>();
+				do {
+					orderByList.add(parseExpr());
+					boolean isDescending = accept("DESC");
+					if (!isDescending) {
+						accept("ASC");
+					}
+					descendingList.add(Boolean.valueOf(isDescending));
+				} while (accept(","));
+			}
+		}
+		else if (accept("UPDATE")) {
+			statementType = StatementType.UPDATE;
+			parseRangeVariable();
+			expect("SET");
+			do {
+				Expr target = parsePrimary();
+				if (!(target instanceof PathExpr)) {
+					throw new IllegalArgumentException("Invalid SET target");
+				}
+				expect("=");
+				setPathList.add((PathExpr)target);
+				setValueList.add(parseExpr());
+			} while (accept(","));
+			parseWhere();
+		}
+		else if (accept("DELETE")) {
+			statementType = StatementType.DELETE;
+			expect("FROM");
+			parseRangeVariable();
+			parseWhere();
+		}
+		else {
+			throw new IllegalArgumentException("Unexpected statement type");
+		}
+		if (pos < tokens.size()) {
+			throw new IllegalArgumentException(
+				"Unexpected token " + tokens.get(pos));
+		}
+	}
+
+	/**
+	 * Parses the FROM clause (JOIN FETCH clauses are skipped).
+	 */
+	private void parseFrom() {
+		expect("FROM");
+		parseRangeVariable();
+		while (peek("LEFT") || peek("INNER") || peek("JOIN")) {
+			if (accept("LEFT")) {
+				accept("OUTER");
+			}
+			else {
+				accept("INNER");
+			}
+			expect("JOIN");
+			accept("FETCH");
+			parsePrimary(); // the joined path
+			accept("AS");
+			if (pos < tokens.size() && isIdentifier(tokens.get(pos)) &&
+					!isClauseKeyword(tokens.get(pos))) {
+				pos++; // join variable
+			}
+		}
+	}
+
+	/**
+	 * Parses an entity name with its range variable (alias).
+	 */
+	private void parseRangeVariable() {
+		entityType = MemoryEntityType.get(store.getEntityClass(next()));
+		accept("AS");
+		alias = next();
+	}
+
+	/**
+	 * Parses an optional WHERE clause.
+	 */
+	private void parseWhere() {
+		if (accept("WHERE")) {
+			where = parseCondition();
+		}
+	}
+
+	/**
+	 * Parses a SELECT clause item.
+	 *
+	 * @return the item expression.
+	 */
+	private Expr parseSelectItem() {
+		if (accept("NEW")) {
+			StringBuilder className = new StringBuilder(next());
+			while (accept(".")) {
+				className.append('.').append(next());
+			}
+			return new NewExpr(className.toString(), parseArguments());
+		}
+		return parseExpr();
+	}
+
+	/**
+	 * Parses a condition (OR of ANDs).
+	 *
+	 * @return the condition expression.
+	 */
+	private Expr parseCondition() {
+		Expr expr = parseAnd();
+		while (accept("OR")) {
+			expr = new LogicalExpr(false, expr, parseAnd());
+		}
+		return expr;
+	}
+
+	private Expr parseAnd() {
+		Expr expr = parseNot();
+		while (accept("AND")) {
+			expr = new LogicalExpr(true, expr, parseNot());
+		}
+		return expr;
+	}
+
+	private Expr parseNot() {
+		if (accept("NOT")) {
+			return new NotExpr(parseNot());
+		}
+		if (accept("(")) {
+			Expr expr = parseCondition();
+			expect(")");
+			return expr;
+		}
+		return parsePredicate();
+	}
+
+	/**
+	 * Parses a simple condition (comparison, LIKE, BETWEEN, IN, IS NULL).
+	 *
+	 * @return the condition expression.
+	 */
+	private Expr parsePredicate() {
+		Expr left = parseExpr();
+		if (accept("IS")) {
+			boolean isNot = accept("NOT");
+			expect("NULL");
+			return new IsNullExpr(left, isNot);
+		}
+		boolean isNot = accept("NOT");
+		if (accept("LIKE")) {
+			return new LikeExpr(left, parseExpr(), isNot);
+		}
+		if (accept("BETWEEN")) {
+			Expr low = parseExpr();
+			expect("AND");
+			return new BetweenExpr(left, low, parseExpr(), isNot);
+		}
+		if (accept("IN")) {
+			List<Expr> items;
+			if (peek("(")) {
+				items = parseArguments();
+			}
+			else {
+				items = Collections.singletonList(parsePrimary());
+			}
+			return new InExpr(left, items, isNot);
+		}
+		if (isNot) {
+			throw new IllegalArgumentException("Unexpected NOT");
+		}
+		String op = next();
+		if (!op.equals("=") && !op.equals("<>") && !op.equals("!=") &&
+				!op.equals("<") && !op.equals("<=") &&
+				!op.equals(">") && !op.equals(">=")) {
+			throw new IllegalArgumentException("Unexpected token " + op);
+		}
+		return new CompareExpr(op.equals("!=") ? "<>" : op, left, parseExpr());
+	}
+
+	/**
+	 * Parses an arithmetic expression.
+	 *
+	 * @return the expression.
+	 */
+	private Expr parseExpr() {
+		Expr expr = parseTerm();
+		while (peek("+") || peek("-")) {
+			expr = new ArithmeticExpr(next().charAt(0), expr, parseTerm());
+		}
+		return expr;
+	}
+
+	private Expr parseTerm() {
+		Expr expr = parsePrimary();
+		while (peek("*") || peek("/")) {
+			expr = new ArithmeticExpr(next().charAt(0), expr, parsePrimary());
+		}
+		return expr;
+	}
+
+	/**
+	 * Parses a literal, a parameter, a path or a function call.
+	 *
+	 * @return the expression.
+	 */
+	private Expr parsePrimary() {
+		String token = next();
+		if (token.equals("-")) {
+			return new ArithmeticExpr('-', new LiteralExpr(Long.valueOf(0)),
+				parsePrimary());
+		}
+		if (token.equals("(")) {
+			Expr expr = parseExpr();
+			expect(")");
+			return expr;
+		}
+		if (token.startsWith("'")) {
+			return new LiteralExpr(token.substring(1));
+		}
+		if (token.startsWith(":")) {
+			return new ParameterExpr(token.substring(1));
+		}
+		if (token.startsWith("?")) {
+			return new ParameterExpr(Integer.valueOf(token.substring(1)));
+		}
+		if (Character.isDigit(token.charAt(0))) {
+			return new LiteralExpr(parseNumber(token));
+		}
+		if (token.equalsIgnoreCase("TRUE") || token.equalsIgnoreCase("FALSE")) {
+			return new LiteralExpr(Boolean.valueOf(token));
+		}
+		if (!isIdentifier(token)) {
+			throw new IllegalArgumentException("Unexpected token " + token);
+		}
+		if (peek("(")) {
+			String function = token.toUpperCase(Locale.ENGLISH);
+			if (function.equals("COUNT") || function.equals("MIN") ||
+					function.equals("MAX") || function.equals("AVG") ||
+					function.equals("SUM")) {
+				expect("(");
+				boolean isDistinctValues = accept("DISTINCT");
+				Expr arg = parseExpr();
+				expect(")");
+				hasAggregates = true;
+				return new AggregateExpr(function, arg, isDistinctValues);
+			}
+			return new FunctionExpr(function, parseArguments());
+		}
+		if (!token.equals(alias)) {
+			throw new IllegalArgumentException("Unknown identifier " + token);
+		}
+		List<String> fields = new ArrayList<String>();
+		while (accept(".")) {
+			fields.add(next());
+		}
+		return new PathExpr(fields.toArray(new String[fields.size()]));
+	}
+
+	/**
+	 * Parses a parenthesized comma separated expression list.
+	 *
+	 * @return the expressions.
+	 */
+	private List<Expr> parseArguments() {
+		expect("(");
+		List<Expr> list = new ArrayList<Expr>();
+		if (!accept(")")) {
+			do {
+				list.add(parseExpr());
+			} while (accept(","));
+			expect(")");
+		}
+		return list;
+	}
+
+	//--------//
+	// Tokens //
+	//--------//
+
+	/**
+	 * Splits a query string into tokens. String literal tokens are stored
+	 * unescaped with a leading quote, e.g. "'abc".
+	 *
+	 * @param ql the query string
+	 * @return the tokens.
+	 */
+	private static List<String> tokenize(String ql) {
+		List<String> list = new ArrayList<String>();
+		int length = ql.length();
+		for (int i = 0; i < length; ) {
+			char c = ql.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+			if (c == '\'') {
+				StringBuilder sb = new StringBuilder("'");
+				for (i++; i < length; i++) {
+					c = ql.charAt(i);
+					if (c == '\'') {
+						if (i + 1 < length && ql.charAt(i + 1) == '\'') {
+							i++; // escaped quote
+						}
+						else {
+							break;
+						}
+					}
+					sb.append(c);
+				}
+				i++;
+				list.add(sb.toString());
+				continue;
+			}
+			if (c == ':' || c == '?' ||
+					Character.isJavaIdentifierStart(c)) {
+				for (i++; i < length &&
+					Character.isJavaIdentifierPart(ql.charAt(i)); i++);
+			}
+			else if (Character.isDigit(c)) {
+				for (i++; i < length && (Character.isLetterOrDigit(
+					ql.charAt(i)) || ql.charAt(i) == '.'); i++);
+			}
+			else if ((c == '<' || c == '>' || c == '!') && i + 1 < length &&
+					(ql.charAt(i + 1) == '=' || c == '<' && ql.charAt(i + 1) == '>')) {
+				i += 2;
+			}
+			else {
+				i++;
+			}
+			list.add(ql.substring(start, i));
+		}
+		return list;
+	}
+
+	/**
+	 * Parses a numeric literal (e.g. "12", "12L", "1.5").
+	 *
+	 * @param token the literal token
+	 * @return a Long or a Double.
+	 */
+	private static Object parseNumber(String token) {
+		char last = Character.toUpperCase(token.charAt(token.length() - 1));
+		if (last == 'L') {
+			return Long.valueOf(token.substring(0, token.length() - 1));
+		}
+		if (last == 'D' || last == 'F' || token.indexOf('.') >= 0) {
+			return Double.valueOf(token);
+		}
+		return Long.valueOf(token);
+	}
+
+	private boolean isIdentifier(String token) {
+		return Character.isJavaIdentifierStart(token.charAt(0));
+	}
+
+	private boolean isClauseKeyword(String token) {
+		for (String keyword : new String[] { "WHERE", "GROUP", "HAVING",
+				"ORDER", "LEFT", "INNER", "JOIN" }) {
+			if (keyword.equalsIgnoreCase(token)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean peek(String token) {
+		return pos < tokens.size() && tokens.get(pos).equalsIgnoreCase(token);
+	}
+
+	private boolean accept(String token) {
+		if (peek(token)) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(String token) {
+		if (!accept(token)) {
+			throw new IllegalArgumentException("Expected " + token);
+		}
+	}
+
+	private String next() {
+		if (pos >= tokens.size()) {
+			throw new IllegalArgumentException("Unexpected end of query");
+		}
+		return tokens.get(pos++);
+	}
+
+	//-------------------//
+	// Value Comparisons //
+	//-------------------//
+
+	/**
+	 * Compares two values (nulls first, numbers by value).
+	 *
+	 * @param value1 the first value
+	 * @param value2 the second value
+	 * @return negative, zero or positive (as in Comparable).
+	 */
+	@SuppressWarnings("unchecked")
+	static int compareValues(Object value1, Object value2) {
+		if (value1 == null || value2 == null) {
+			return (value1 == null) ? ((value2 == null) ? 0 : -1) : 1;
+		}
+		if (value1 instanceof Number && value2 instanceof Number) {
+			if (isIntegral(value1) && isIntegral(value2)) {
+				long long1 = ((Number)value1).longValue();
+				long long2 = ((Number)value2).longValue();
+				return (long1 < long2) ? -1 : ((long1 == long2) ? 0 : 1);
+			}
+			return Double.compare(((Number)value1).doubleValue(),
+				((Number)value2).doubleValue());
+		}
+		if (value1 instanceof Enum && value2 instanceof String) {
+			value1 = ((Enum<?>)value1).name();
+		}
+		return ((Comparable<Object>)value1).compareTo(value2);
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Long || value instanceof Integer ||
+			value instanceof Short || value instanceof Byte;
+	}
+
+	private static boolean isTrue(Object value) {
+		return Boolean.TRUE.equals(value);
+	}
+
+	/**
+	 * Evaluates a list of expressions (collection values are expanded).
+	 *
+	 * @param exprs the expressions
+	 * @param row the evaluation context
+	 * @return the values.
+	 */
+	private static List<Object> evalList(List<Expr> exprs, Row row) {
+		List<Object> values = new ArrayList<Object>();
+		for (Expr expr : exprs) {
+			Object value = expr.eval(row);
+			if (value instanceof Collection) {
+				values.addAll((Collection<?>)value);
+			}
+			else {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	//-------------//
+	// Expressions //
+	//-------------//
+
+	/** Base class of query expressions */
+	private static abstract class Expr {
+
+		/**
+		 * Evaluates the expression.
+		 *
+		 * @param row the context (no entity for constant expressions)
+		 * @return the value.
+		 */
+		abstract Object eval(Row row);
+
+		/**
+		 * Checks if the value does not depend on the context.
+		 *
+		 * @return true - if constant; false - if not.
+		 */
+		boolean isConstant() {
+			return false;
+		}
+	}
+
+	private static final class LiteralExpr extends Expr {
+		private final Object value;
+		LiteralExpr(Object value) {
+			this.value = value;
+		}
+		@Override
+		Object eval(Row row) {
+			return value;
+		}
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+	}
+
+	private static final class ParameterExpr extends Expr {
+		private final Object key;
+		ParameterExpr(Object key) {
+			this.key = key;
+		}
+		@Override
+		Object eval(Row row) {
+			if (!row.parameters.containsKey(key)) {
+				throw new IllegalStateException("Missing parameter " + key);
+			}
+			return row.parameters.get(key);
+		}
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+	}
+
+	private static final class PathExpr extends Expr {
+		private final String[] fields;
+		PathExpr(String[] fields) {
+			this.fields = fields;
+		}
+		@Override
+		Object eval(Row row) {
+			Object value = row.entity;
+			for (int i = 0; i < fields.length && value != null; i++) {
+				value = MemoryEntityType.get(
+					value.getClass()).getFieldValue(value, fields[i]);
+			}
+			return value;
+		}
+		void set(Row row, Object value) {
+			Object target = row.entity;
+			for (int i = 0; i < fields.length - 1; i++) {
+				target = MemoryEntityType.get(
+					target.getClass()).getFieldValue(target, fields[i]);
+			}
+			MemoryEntityType.get(target.getClass()).setFieldValue(
+				target, fields[fields.length - 1], value);
+		}
+	}
+
+	private static final class ArithmeticExpr extends Expr {
+		private final char op;
+		private final Expr left, right;
+		ArithmeticExpr(char op, Expr left, Expr right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		@Override
+		Object eval(Row row) {
+			Object value1 = left.eval(row);
+			Object value2 = right.eval(row);
+			if (value1 == null || value2 == null) {
+				return null;
+			}
+			if (isIntegral(value1) && isIntegral(value2)) {
+				long long1 = ((Number)value1).longValue();
+				long long2 = ((Number)value2).longValue();
+				switch (op) {
+					case '+': return Long.valueOf(long1 + long2);
+					case '-': return Long.valueOf(long1 - long2);
+					case '*': return Long.valueOf(long1 * long2);
+					default: return Long.valueOf(long1 / long2);
+				}
+			}
+			double double1 = ((Number)value1).doubleValue();
+			double double2 = ((Number)value2).doubleValue();
+			switch (op) {
+				case '+': return Double.valueOf(double1 + double2);
+				case '-': return Double.valueOf(double1 - double2);
+				case '*': return Double.valueOf(double1 * double2);
+				default: return Double.valueOf(double1 / double2);
+			}
+		}
+		@Override
+		boolean isConstant() {
+			return left.isConstant() && right.isConstant();
+		}
+	}
+
+	private static final class FunctionExpr extends Expr {
+		private final String function;
+		private final List<Expr> args;
+		FunctionExpr(String function, List<Expr> args) {
+			this.function = function;
+			this.args = args;
+			if (!function.equals("MOD") && !function.equals("ABS") &&
+					!function.equals("LOWER") && !function.equals("UPPER") &&
+					!function.equals("LENGTH")) {
+				throw new IllegalArgumentException("Unsupported function " +
+					function);
+			}
+		}
+		@Override
+		Object eval(Row row) {
+			Object value = args.get(0).eval(row);
+			if (value == null) {
+				return null;
+			}
+			if (function.equals("MOD")) {
+				Object divisor = args.get(1).eval(row);
+				return (divisor == null) ? null : Long.valueOf(
+					((Number)value).longValue() % ((Number)divisor).longValue());
+			}
+			if (function.equals("ABS")) {
+				return isIntegral(value) ?
+					(Object)Long.valueOf(Math.abs(((Number)value).longValue())) :
+					(Object)Double.valueOf(Math.abs(((Number)value).doubleValue()));
+			}
+			if (function.equals("LENGTH")) {
+				return Long.valueOf(value.toString().length());
+			}
+			return function.equals("LOWER") ?
+				value.toString().toLowerCase() : value.toString().toUpperCase();
+		}
+	}
+
+	private static final class AggregateExpr extends Expr {
+		private final String function;
+		private final Expr arg;
+		private final boolean isDistinctValues;
+		AggregateExpr(String function, Expr arg, boolean isDistinctValues) {
+			this.function = function;
+			this.arg = arg;
+			this.isDistinctValues = isDistinctValues;
+		}
+		@Override
+		Object eval(Row row) {
+			List<Object> group = (row.group != null) ?
+				row.group : Collections.singletonList(row.entity);
+			Collection<Object> values = isDistinctValues ?
+				new LinkedHashSet<Object>() : new ArrayList<Object>(group.size());
+			for (Object entity : group) {
+				Object value = arg.eval(new Row(entity, null, row.parameters));
+				if (value != null) {
+					values.add(value);
+				}
+			}
+			if (function.equals("COUNT")) {
+				return Long.valueOf(values.size());
+			}
+			if (values.isEmpty()) {
+				return null;
+			}
+			if (function.equals("MIN") || function.equals("MAX")) {
+				Object result = null;
+				for (Object value : values) {
+					int comparison = (result == null) ? 0 :
+						compareValues(value, result);
+					if (result == null || (function.equals("MIN") ?
+							comparison < 0 : comparison > 0)) {
+						result = value;
+					}
+				}
+				return result;
+			}
+			double doubleSum = 0;
+			long longSum = 0;
+			boolean isLong = true;
+			for (Object value : values) {
+				isLong &= isIntegral(value);
+				doubleSum += ((Number)value).doubleValue();
+				longSum += ((Number)value).longValue();
+			}
+			if (function.equals("AVG")) {
+				return Double.valueOf(doubleSum / values.size());
+			}
+			return isLong ? (Object)Long.valueOf(longSum) :
+				(Object)Double.valueOf(doubleSum);
+		}
+	}
+
+	private static final class NewExpr extends Expr {
+		private final Constructor<?> constructor;
+		private final List<Expr> args;
+		NewExpr(String className, List<Expr> args) {
+			this.args = args;
+			Constructor<?> match = null;
+			try {
+				for (Constructor<?> c : Class.forName(className).getConstructors()) {
+					if (c.getParameterTypes().length == args.size()) {
+						match = c;
+					}
+				}
+			}
+			catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Unknown class " + className);
+			}
+			if (match == null) {
+				throw new IllegalArgumentException("No matching constructor in " +
+					className);
+			}
+			this.constructor = match;
+		}
+		@Override
+		Object eval(Row row) {
+			Object[] values = new Object[args.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = args.get(i).eval(row);
+			}
+			try {
+				return constructor.newInstance(values);
+			}
+			catch (Exception e) {
+				throw new PersistenceException("Failed to construct " +
+					constructor.getDeclaringClass().getName(), e);
+			}
+		}
+	}
+
+	private static final class CompareExpr extends Expr {
+		private final String op;
+		private final Expr left, right;
+		CompareExpr(String op, Expr left, Expr right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		@Override
+		Object eval(Row row) {
+			Object value1 = left.eval(row);
+			Object value2 = right.eval(row);
+			if (value1 == null || value2 == null) {
+				return Boolean.FALSE;
+			}
+			int result = compareValues(value1, value2);
+			boolean isMatch;
+			if (op.equals("=")) {
+				isMatch = result == 0;
+			}
+			else if (op.equals("<>")) {
+				isMatch = result != 0;
+			}
+			else if (op.equals("<")) {
+				isMatch = result < 0;
+			}
+			else if (op.equals("<=")) {
+				isMatch = result <= 0;
+			}
+			else if (op.equals(">")) {
+				isMatch = result > 0;
+			}
+			else {
+				isMatch = result >= 0;
+			}
+			return Boolean.valueOf(isMatch);
+		}
+	}
+
+	private static final class LikeExpr extends Expr {
+		private final Expr value, pattern;
+		private final boolean isNot;
+		private String lastPattern;
+		private Pattern regex;
+		private String prefix;
+		LikeExpr(Expr value, Expr pattern, boolean isNot) {
+			this.value = value;
+			this.pattern = pattern;
+			this.isNot = isNot;
+		}
+		@Override
+		Object eval(Row row) {
+			Object string = value.eval(row);
+			String like = (String)pattern.eval(row);
+			if (string == null || like == null) {
+				return Boolean.FALSE;
+			}
+			if (!like.equals(lastPattern)) { // compile once per pattern
+				lastPattern = like;
+				int wildcardPos = like.indexOf('%');
+				if (wildcardPos == like.length() - 1 && like.indexOf('_') < 0) {
+					prefix = like.substring(0, wildcardPos);
+					regex = null;
+				}
+				else {
+					StringBuilder sb = new StringBuilder();
+					for (char c : like.toCharArray()) {
+						if (c == '%') {
+							sb.append(".*");
+						}
+						else if (c == '_') {
+							sb.append('.');
+						}
+						else {
+							sb.append(Pattern.quote(String.valueOf(c)));
+						}
+					}
+					regex = Pattern.compile(sb.toString(), Pattern.DOTALL);
+					prefix = null;
+				}
+			}
+			boolean isMatch = (prefix != null) ?
+				string.toString().startsWith(prefix) :
+				regex.matcher(string.toString()).matches();
+			return Boolean.valueOf(isMatch != isNot);
+		}
+	}
+
+	private static final class BetweenExpr extends Expr {
+		private final Expr value, low, high;
+		private final boolean isNot;
+		BetweenExpr(Expr value, Expr low, Expr high, boolean isNot) {
+			this.value = value;
+			this.low = low;
+			this.high = high;
+			this.isNot = isNot;
+		}
+		@Override
+		Object eval(Row row) {
+			Object v = value.eval(row);
+			Object lowValue = low.eval(row);
+			Object highValue = high.eval(row);
+			if (v == null || lowValue == null || highValue == null) {
+				return Boolean.FALSE;
+			}
+			boolean isMatch = compareValues(v, lowValue) >= 0 &&
+				compareValues(v, highValue) <= 0;
+			return Boolean.valueOf(isMatch != isNot);
+		}
+	}
+
+	private static final class InExpr extends Expr {
+		private final Expr value;
+		private final List<Expr> items;
+		private final boolean isNot;
+		InExpr(Expr value, List<Expr> items, boolean isNot) {
+			this.value = value;
+			this.items = items;
+			this.isNot = isNot;
+		}
+		@Override
+		Object eval(Row row) {
+			Object v = value.eval(row);
+			if (v == null) {
+				return Boolean.FALSE;
+			}
+			boolean isMatch = false;
+			for (Object item : evalList(items, row)) {
+				if (item != null && compareValues(v, item) == 0) {
+					isMatch = true;
+					break;
+				}
+			}
+			return Boolean.valueOf(isMatch != isNot);
+		}
+	}
+
+	private static final class IsNullExpr extends Expr {
+		private final Expr value;
+		private final boolean isNot;
+		IsNullExpr(Expr value, boolean isNot) {
+			this.value = value;
+			this.isNot = isNot;
+		}
+		@Override
+		Object eval(Row row) {
+			return Boolean.valueOf((value.eval(row) == null) != isNot);
+		}
+	}
+
+	private static final class LogicalExpr extends Expr {
+		private final boolean isAnd;
+		private final Expr left, right;
+		LogicalExpr(boolean isAnd, Expr left, Expr right) {
+			this.isAnd = isAnd;
+			this.left = left;
+			this.right = right;
+		}
+		@Override
+		Object eval(Row row) {
+			boolean isLeft = isTrue(left.eval(row));
+			if (isAnd != isLeft) {
+				return Boolean.valueOf(isLeft); // short circuit
+			}
+			return Boolean.valueOf(isTrue(right.eval(row)));
+		}
+	}
+
+	private static final class NotExpr extends Expr {
+		private final Expr condition;
+		NotExpr(Expr condition) {
+			this.condition = condition;
+		}
+		@Override
+		Object eval(Row row) {
+			return Boolean.valueOf(!isTrue(condition.eval(row)));
+		}
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.mem;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.persistence.*;
+
+
+/**
+ * In-memory database of a persistence unit (shared by all the
+ * EntityManagerFactory instances of that unit in the JVM).
+ *
+ * Entity objects are stored as is (no copies), in a concurrent sorted map
+ * per entity hierarchy. There are no transactions - changes are visible
+ * immediately and are not rolled back.
+ */
+final class MemoryStore {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Maximum number of parsed queries in the query cache of a store */
+	private static final int QUERY_CACHE_SIZE = 2048;
+
+	//-------------//
+	// Static Data //
+	//-------------//
+
+	/** Stores by persistence unit name */
+	private static final ConcurrentMap<String, MemoryStore> storeMap =
+		new ConcurrentHashMap<String, MemoryStore>();
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** Entity objects by primary key, per root entity class */
+	private final ConcurrentMap<Class<?>, ConcurrentNavigableMap<Object, Object>>
+		tableMap = new ConcurrentHashMap<Class<?>,
+			ConcurrentNavigableMap<Object, Object>>();
+
+	/** Primary key generators, per root entity class */
+	private final ConcurrentMap<Class<?>, AtomicLong> sequenceMap =
+		new ConcurrentHashMap<Class<?>, AtomicLong>();
+
+	/** Entity classes by entity name (for queries) */
+	private final ConcurrentMap<String, Class<?>> entityNameMap =
+		new ConcurrentHashMap<String, Class<?>>();
+
+	/** Named query strings by query name (from mapping files) */
+	private final ConcurrentMap<String, String> namedQueryMap =
+		new ConcurrentHashMap<String, String>();
+
+	/** Parsed queries by query string (least recently used first) */
+	@SuppressWarnings("serial")
+	private final Map<String, MemoryQuery> queryCache =
+		new LinkedHashMap<String, MemoryQuery>(256, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, MemoryQuery> eldest) {
+				return size() > QUERY_CACHE_SIZE;
+			}
+		};
+
+	//--------------//
+	// Construction //
+	//--------------//
+
+	/**
+	 * Gets the store of a specified persistence unit.
+	 *
+	 * @param puName the persistence unit name
+	 * @return the store (created on first use).
+	 */
+	static MemoryStore get(String puName) {
+		MemoryStore store = storeMap.get(puName);
+		if (store == null) {
+			storeMap.putIfAbsent(puName, new MemoryStore());
+			store = storeMap.get(puName);
+		}
+		return store;
+	}
+
+	//----------//
+	// Metadata //
+	//----------//
+
+	/**
+	 * Registers an entity class (so it can be used in queries).
+	 *
+	 * @param entityClass the entity class
+	 */
+	void addEntityClass(Class<?> entityClass) {
+		if (entityClass.isAnnotationPresent(Entity.class)) {
+			entityNameMap.put(
+				MemoryEntityType.get(entityClass).getEntityName(), entityClass);
+		}
+	}
+
+	/**
+	 * Gets an entity class by its entity name.
+	 *
+	 * @param entityName the entity name
+	 * @return the entity class.
+	 */
+	Class<?> getEntityClass(String entityName) {
+		Class<?> entityClass = entityNameMap.get(entityName);
+		if (entityClass == null) {
+			throw new IllegalArgumentException(
+				"Unknown entity name: " + entityName);
+		}
+		return entityClass;
+	}
+
+	/**
+	 * Registers a named query.
+	 *
+	 * @param name the query name
+	 * @param ql the query string
+	 */
+	void addNamedQuery(String name, String ql) {
+		namedQueryMap.put(name, ql);
+	}
+
+	/**
+	 * Gets a named query string.
+	 *
+	 * @param name the query name
+	 * @return the query string.
+	 */
+	String getNamedQuery(String name) {
+		String ql = namedQueryMap.get(name);
+		if (ql == null) {
+			throw new IllegalArgumentException("Unknown named query: " + name);
+		}
+		return ql;
+	}
+
+	/**
+	 * Gets a parsed query (from the query cache or by parsing it).
+	 *
+	 * @param ql the query string
+	 * @return the parsed query (shared by all the queries of that string).
+	 */
+	MemoryQuery getQuery(String ql) {
+		MemoryQuery query;
+		synchronized (queryCache) {
+			query = queryCache.get(ql);
+		}
+		if (query == null) {
+			query = new MemoryQuery(this, ql); // parsed outside the lock
+			synchronized (queryCache) {
+				queryCache.put(ql, query);
+			}
+		}
+		return query;
+	}
+
+	//--------//
+	// Tables //
+	//--------//
+
+	/**
+	 * Gets the table of a specified entity hierarchy.
+	 *
+	 * @param type the metadata of an entity class in that hierarchy
+	 * @return the entity objects by primary key.
+	 */
+	ConcurrentNavigableMap<Object, Object> getTable(MemoryEntityType type) {
+		Class<?> rootClass = type.getRootClass();
+		ConcurrentNavigableMap<Object, Object> table = tableMap.get(rootClass);
+		if (table == null) {
+			tableMap.putIfAbsent(rootClass,
+				new ConcurrentSkipListMap<Object, Object>());
+			table = tableMap.get(rootClass);
+		}
+		return table;
+	}
+
+	/**
+	 * Converts a primary key to a table key (integer types share a key type).
+	 *
+	 * @param id a primary key
+	 * @return the table key.
+	 */
+	static Object toKey(Object id) {
+		if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+			return Long.valueOf(((Number)id).longValue());
+		}
+		return id;
+	}
+
+	//------------//
+	// Operations //
+	//------------//
+
+	/**
+	 * Finds an entity object by its primary key.
+	 *
+	 * @param entityClass the entity class
+	 * @param id the primary key
+	 * @return the entity object (or null if not found).
+	 */
+	Object find(Class<?> entityClass, Object id) {
+		if (id == null) {
+			throw new IllegalArgumentException("null primary key");
+		}
+		MemoryEntityType type = MemoryEntityType.get(entityClass);
+		Object entity = getTable(type).get(toKey(id));
+		return entityClass.isInstance(entity) ? entity : null;
+	}
+
+	/**
+	 * Stores a new entity object (and cascades the operation).
+	 *
+	 * @param entity the entity object
+	 */
+	void persist(Object entity) {
+		persist(entity, new IdentityHashMap<Object, Object>());
+	}
+
+	/**
+	 * Stores a new entity object (and cascades the operation).
+	 *
+	 * @param entity the entity object
+	 * @param visited entity objects that have already been handled
+	 */
+	private void persist(Object entity, Map<Object, Object> visited) {
+		if (visited.put(entity, entity) != null) {
+			return; // already handled (a cycle)
+		}
+		MemoryEntityType type = MemoryEntityType.get(entity.getClass());
+		Object id = type.getId(entity);
+		if (id == null) {
+			if (!type.isGenerated()) {
+				throw new PersistenceException("Missing primary key in " +
+					type.getEntityName());
+			}
+			id = type.toId(nextId(type));
+			type.setId(entity, id);
+		}
+		Object existing = getTable(type).putIfAbsent(toKey(id), entity);
+		if (existing != null && existing != entity) {
+			throw new EntityExistsException("Duplicate primary key " + id +
+				" in " + type.getEntityName());
+		}
+		for (Field field : type.getPersistCascades()) {
+			for (Object related :
+					getRelated(MemoryEntityType.getValue(field, entity))) {
+				persist(related, visited);
+			}
+		}
+	}
+
+	/**
+	 * Merges the state of an entity object into the stored entity object.
+	 *
+	 * @param entity the entity object (possibly detached)
+	 * @return the stored entity object.
+	 */
+	Object merge(Object entity) {
+		return merge(entity, new IdentityHashMap<Object, Object>());
+	}
+
+	/**
+	 * Merges the state of an entity object into the stored entity object.
+	 *
+	 * @param entity the entity object (possibly detached)
+	 * @param visited merged entity objects (keys) to stored ones (values)
+	 * @return the stored entity object.
+	 */
+	private Object merge(Object entity, Map<Object, Object> visited) {
+		Object stored = visited.get(entity);
+		if (stored != null) {
+			return stored; // already handled (a cycle)
+		}
+		MemoryEntityType type = MemoryEntityType.get(entity.getClass());
+		Object id = type.getId(entity);
+		stored = (id != null) ? getTable(type).get(toKey(id)) : null;
+		if (stored == null) {
+			persist(entity);
+			visited.put(entity, entity);
+			return entity;
+		}
+		visited.put(entity, stored);
+		if (stored != entity) {
+			for (Field field : type.getFields()) {
+				MemoryEntityType.setValue(field, stored,
+					MemoryEntityType.getValue(field, entity));
+			}
+		}
+		for (Field field : type.getMergeCascades()) {
+			Object value = MemoryEntityType.getValue(field, stored);
+			if (value instanceof Collection || value instanceof Map) {
+				for (Object related : getRelated(value)) {
+					merge(related, visited);
+				}
+			}
+			else if (value != null) {
+				MemoryEntityType.setValue(field, stored, merge(value, visited));
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * Removes a stored entity object (and cascades the operation).
+	 *
+	 * @param entity the entity object
+	 */
+	void remove(Object entity) {
+		remove(entity, true);
+	}
+
+	/**
+	 * Removes a stored entity object.
+	 *
+	 * @param entity the entity object
+	 * @param cascade true - to cascade the operation; false - not
+	 */
+	void remove(Object entity, boolean cascade) {
+		MemoryEntityType type = MemoryEntityType.get(entity.getClass());
+		Object id = type.getId(entity);
+		if (id == null || !getTable(type).remove(toKey(id), entity)) {
+			return; // not stored (or already removed)
+		}
+		if (cascade) {
+			for (Field field : type.getRemoveCascades()) {
+				for (Object related :
+						getRelated(MemoryEntityType.getValue(field, entity))) {
+					remove(related, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the entity objects that are referenced by a relationship value.
+	 *
+	 * @param value a reference, a collection, a map or null
+	 * @return the referenced entity objects.
+	 */
+	private static Collection<?> getRelated(Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (value instanceof Collection) {
+			return new ArrayList<Object>((Collection<?>)value);
+		}
+		if (value instanceof Map) {
+			return new ArrayList<Object>(((Map<?, ?>)value).values());
+		}
+		return Collections.singletonList(value);
+	}
+
+	/**
+	 * Generates a new primary key value for an entity hierarchy.
+	 *
+	 * @param type the metadata of an entity class in that hierarchy
+	 * @return the next sequence number (starting at 1).
+	 */
+	private long nextId(MemoryEntityType type) {
+		Class<?> rootClass = type.getRootClass();
+		AtomicLong sequence = sequenceMap.get(rootClass);
+		if (sequence == null) {
+			sequenceMap.putIfAbsent(rootClass, new AtomicLong());
+			sequence = sequenceMap.get(rootClass);
+		}
+		return sequence.incrementAndGet();
+	}
+}
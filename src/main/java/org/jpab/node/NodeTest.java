@@ -56,6 +56,16 @@ public class NodeTest extends Test {
 		return false; 
 	}
 
+	/**
+	 * Checks if the entity objects of this test can be removed by JPQL DELETE.
+	 * 
+	 * @return false - nodes are referenced by other nodes (foreign keys).
+	 */
+	@Override
+	public boolean supportsBulkRemove() {
+		return false;
+	}
+
     /**
      * Gets the type of the benchmark main entity class.
      * 
@@ -66,6 +76,43 @@ public class NodeTest extends Test {
         return Node.class; 
     }
 
+    /**
+     * Gets the JOIN FETCH clauses for retrieving the main entity class.
+     *
+     * @return the JOIN FETCH clauses of the root children (first level).
+     */
+    @Override
+    protected String getFetchJoins() {
+        return " LEFT JOIN FETCH o.child1 LEFT JOIN FETCH o.child2";
+    }
+
+    /**
+     * Gets the name of the int field that TestEntity.update() increases.
+     *
+     * @return the name of the field that is increased by bulk updates.
+     */
+    @Override
+    protected String getUpdateFieldName() {
+        return "changeCount";
+    }
+
+    /**
+     * Gets a random id of an entity object root (that may be missing).
+     *
+     * @param fromId the lowest id to return (inclusive)
+     * @param toId the highest id to return (inclusive)
+     * @return the random id.
+     */
+    @Override
+    @SuppressWarnings("boxing")
+    protected Object randomId(int fromId, int toId) {
+        int graphSize = getGraphSize();
+        // Tree N holds ids N * graphSize + 1 ... (N + 1) * graphSize:
+        int treeId = Randomizer.randomInt(
+            fromId / graphSize, (toId - 1) / graphSize);
+        return treeId * graphSize + 1;
+    }
+
     /**
      * Gets the number of reachable objects from every root entity object. 
      * 
@@ -83,25 +130,35 @@ public class NodeTest extends Test {
 	 */
     @Override
     protected TestEntity newEntity() {
+        int graphSize = getGraphSize();
         int treeId = lastTreeId.incrementAndGet();
-        Node[] nodes = new Node[GRAPH_SIZE + 1];
-        for (int nodeIx = 1; nodeIx <= GRAPH_SIZE; nodeIx++)
+        TestEntity[] nodes = new TestEntity[graphSize + 1];
+        for (int nodeIx = graphSize; nodeIx >= 1; nodeIx--)
         {
-            Node node = new Node(treeId * GRAPH_SIZE + nodeIx);
-            nodes[nodeIx] = node;
-            int parentIx = nodeIx >> 1;
-            if (parentIx > 0) {
-                if ((nodeIx % 2) == 0) {
-                    nodes[parentIx].setChild1(node);
-                }
-                else {
-                    nodes[parentIx].setChild2(node);
-                }
-            }
+            // Children (2 * nodeIx, 2 * nodeIx + 1) are created first:
+            int childIx = nodeIx << 1;
+            nodes[nodeIx] = newNode(treeId * graphSize + nodeIx,
+                (childIx <= graphSize) ? nodes[childIx] : null,
+                (childIx < graphSize) ? nodes[childIx + 1] : null);
         }
         return nodes[1];
     }
 
+	/**
+	 * Creates a new tree node (overridden by tests of other node classes).
+	 * 
+	 * @param id the primary key of the new node
+	 * @param child1 the first child node (or null)
+	 * @param child2 the second child node (or null)
+	 * @return the new constructed node.
+	 */
+    protected TestEntity newNode(int id, TestEntity child1, TestEntity child2) {
+        Node node = new Node(id);
+        node.setChild1((Node)child1);
+        node.setChild2((Node)child2);
+        return node;
+    }
+
 	/**
 	 * Retrieves entity object roots.
 	 * 
@@ -0,0 +1,77 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.rel;
+
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * An address entity class (a value of the RelPerson address map).
+ */
+@Entity
+@TableGenerator(name="addressSeq", allocationSize=1000)
+public class Address {
+	
+	// Fields:
+
+	@Id @GeneratedValue(strategy=GenerationType.TABLE, generator="addressSeq")
+    private Integer id;
+
+	private String kind; // the map key (e.g. "home")
+	private String street;
+	private String city;
+	private String zip;
+	private String country;
+
+	@ManyToOne
+	private RelPerson owner;
+
+	// Constructors:
+
+    public Address() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public Address(RelPerson owner, String kind) {
+    	this.owner = owner;
+    	this.kind = kind;
+    	street = Randomizer.randomStreet();
+    	city = Randomizer.randomCity();
+    	zip = Randomizer.randomZip();
+    	country = Randomizer.randomCountry();
+    }
+
+	// Methods:
+
+    public String getKind() {
+    	return kind;
+    }
+
+    public void load() {
+		assert kind != null && street != null && city != null &&
+			zip != null && country != null && owner != null;
+    }
+
+    @Override
+    public String toString() {
+        return kind + ": " + street + ", " + city;
+    }
+}
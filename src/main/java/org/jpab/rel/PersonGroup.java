@@ -0,0 +1,60 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.rel;
+
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * A group entity class (shared by many RelPerson members).
+ */
+@Entity
+public class PersonGroup {
+	
+	// Fields:
+
+	@Id
+    private Integer id;
+
+	private String name;
+
+	// Constructors:
+
+    public PersonGroup() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public PersonGroup(int id) {
+    	this.id = Integer.valueOf(id);
+    	name = Randomizer.randomString(6, 12);
+    }
+
+	// Methods:
+
+    public void load() {
+		assert id != null && name != null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
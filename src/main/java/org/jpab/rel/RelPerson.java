@@ -0,0 +1,152 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.rel;
+
+import java.util.*;
+import javax.persistence.*;
+
+import org.jpab.*;
+
+/**
+ * A person entity class with many-to-many groups, a map of addresses
+ * (keyed by kind) and an embedded contact.
+ */
+@Entity
+@TableGenerator(name="relSeq", allocationSize=1000)
+public class RelPerson implements TestEntity {
+
+	// Constants:
+
+	/** Possible keys of the address map */
+	private static final String[] ADDRESS_KINDS = {
+		"home", "work", "billing", "shipping", "vacation"
+	};
+
+	/** Number of addresses of a new person */
+	private static final int INITIAL_ADDRESS_COUNT = 2;
+	
+	// Fields:
+
+	@Id @GeneratedValue(strategy=GenerationType.TABLE, generator="relSeq")
+    private Integer id;
+
+	private String firstName;
+	private String lastName;
+
+	@Embedded
+	private Contact contact;
+
+	@ManyToMany
+	private List<PersonGroup> groups;
+
+	@OneToMany(mappedBy="owner", cascade=CascadeType.ALL, orphanRemoval=true)
+	@MapKey(name="kind")
+	private Map<String, Address> addresses;
+
+	@Basic private int changeCount;
+
+	// Constructors:
+
+    public RelPerson() {
+    	// used by JPA to load an entity object from the database
+    }
+
+    public RelPerson(Test test) {
+    	firstName = Randomizer.randomFirstName();
+    	lastName = Randomizer.randomLastName();
+    	contact = new Contact(test);
+    	groups = new ArrayList<PersonGroup>();
+    	addresses = new HashMap<String, Address>();
+    	while (addresses.size() < INITIAL_ADDRESS_COUNT) {
+    		addAddress();
+    	}
+    }
+
+	// Methods:
+
+    /**
+     * Adds this person to a group (if not a member already).
+     * 
+     * @param group the group to join
+     */
+    public void joinGroup(PersonGroup group) {
+    	if (!groups.contains(group)) {
+    		groups.add(group);
+    	}
+    }
+
+    /**
+     * Replaces one group of this person (removes one, adds one).
+     * 
+     * @param group the group to join
+     */
+    public void changeGroup(PersonGroup group) {
+    	if (!groups.contains(group)) {
+    		if (!groups.isEmpty()) {
+    			groups.remove(Randomizer.randomInt(0, groups.size() - 1));
+    		}
+    		groups.add(group);
+    	}
+    }
+
+    public void load() {
+		assert firstName != null && lastName != null && contact != null;
+		contact.load();
+		for (PersonGroup group : groups) {
+			group.load();
+		}
+		for (Address address : addresses.values()) {
+			address.load();
+		}
+    }
+
+    public void update() {
+    	contact.update();
+    	changeCount++;
+
+    	// Add or remove a single address:
+    	if (addresses.size() > 1 && Randomizer.randomInt(0, 1) == 0) {
+    		List<String> kinds = new ArrayList<String>(addresses.keySet());
+    		addresses.remove(kinds.get(Randomizer.randomInt(0, kinds.size() - 1)));
+    	}
+    	else {
+    		addAddress();
+    	}
+    }
+
+    /**
+     * Adds a new address of a random unused kind (if any).
+     */
+    private void addAddress() {
+    	if (addresses.size() < ADDRESS_KINDS.length) {
+    		String kind;
+    		do {
+    			kind = ADDRESS_KINDS[
+    				Randomizer.randomInt(0, ADDRESS_KINDS.length - 1)];
+    		} while (addresses.containsKey(kind));
+    		addresses.put(kind, new Address(this, kind));
+    	}
+    }
+
+    @Override
+    public String toString() {
+    	return firstName + ' ' + lastName;
+    }
+}
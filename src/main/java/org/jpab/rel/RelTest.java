@@ -0,0 +1,194 @@
+/*
+ * JPA Performance Benchmark - http://www.jpab.org
+ * Copyright  ObjectDB Software Ltd. All Rights Reserved.
+ *
+ * This is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ */
+
+package org.jpab.rel;
+
+import javax.persistence.*;
+
+import org.jpab.*;
+
+
+/**
+ * Tests using RelPerson entity objects with many-to-many groups, a map of
+ * addresses and an embedded contact. Updates add / remove one element of
+ * every collection (to show whether a whole join table is rewritten).
+ */
+public class RelTest extends Test {
+
+	//-----------//
+	// Constants //
+	//-----------//
+
+	/** Number of groups (shared by all the persons) */
+	private static final int GROUP_COUNT = 100;
+
+	/** Number of groups of a new person */
+	private static final int GROUPS_PER_PERSON = 3;
+
+	//--------------//
+	// Data Members //
+	//--------------//
+
+	/** Indicates if the groups have already been stored */
+	private boolean isGroupsStored;
+
+	//---------------//
+	// Configuration //
+	//---------------//
+
+	/**
+	 * Checks if this test includes queries.
+	 * 
+	 * @return true - if it includes queries; false - if not.
+	 */
+	@Override
+	public boolean hasQueries() {
+		return false; 
+	}
+
+	/**
+	 * Checks if the entity objects of this test can be removed by JPQL DELETE.
+	 * 
+	 * @return false - addresses and group memberships reference persons.
+	 */
+	@Override
+	public boolean supportsBulkRemove() {
+		return false;
+	}
+
+	/**
+	 * Gets the actions that follow persist if the test code has no actions.
+	 *
+	 * @return comma separated action names (see Runner action wrappers).
+	 */
+	@Override
+	public String getDefaultActions() {
+		return "Retrieve,JoinFetch,Update,Remove";
+	}
+
+	//----------------//
+	// Implementation //
+	//----------------//
+
+	/**
+	 * Gets the type of the benchmark main entity class.
+	 * 
+	 * @return the type of the benchmark main entity class.
+	 */
+	@Override
+	protected Class getEntityClass() {
+		return RelPerson.class;
+	}
+
+	/**
+	 * Gets the JOIN FETCH clauses for retrieving the main entity class.
+	 * 
+	 * @return the JOIN FETCH clauses of the groups and the addresses.
+	 */
+	@Override
+	protected String getFetchJoins() {
+		return " LEFT JOIN FETCH o.groups LEFT JOIN FETCH o.addresses";
+	}
+
+	/**
+	 * Gets the name of the int field that TestEntity.update() increases.
+	 *
+	 * @return the name of the field that is increased by bulk updates.
+	 */
+	@Override
+	protected String getUpdateFieldName() {
+		return "changeCount";
+	}
+
+	/**
+	 * Creates a new entity object for storing in the database.
+	 * 
+	 * @return the new constructed entity object.
+	 */
+	@Override
+	protected TestEntity newEntity() {
+		return new RelPerson(this);
+	}
+
+	/**
+	 * Persists a new person with references to random existing groups.
+	 * 
+	 * @param em a connection to the test database
+	 * @param entity the new entity object (from the inventory)
+	 */
+	@Override
+	protected void persistEntity(EntityManager em, TestEntity entity) {
+		storeGroups(em);
+		RelPerson person = (RelPerson)entity;
+		for (int i = 0; i < GROUPS_PER_PERSON; i++) {
+			person.joinGroup(randomGroup(em));
+		}
+		em.persist(person);
+	}
+
+	/**
+	 * Updates a person, including replacing one of its groups.
+	 * 
+	 * @param em a connection to the test database
+	 * @param entity the managed entity object
+	 */
+	@Override
+	protected void updateEntity(EntityManager em, TestEntity entity) {
+		entity.update();
+		((RelPerson)entity).changeGroup(randomGroup(em));
+	}
+
+	/**
+	 * Stores all the groups, once, in a separate transaction.
+	 * 
+	 * @param em a connection to the test database
+	 */
+	private synchronized void storeGroups(EntityManager em) {
+		if (!isGroupsStored) {
+			EntityManager groupEm =
+				em.getEntityManagerFactory().createEntityManager();
+			try {
+				groupEm.getTransaction().begin();
+				for (int id = 1; id <= GROUP_COUNT; id++) {
+					groupEm.persist(new PersonGroup(id));
+				}
+				groupEm.getTransaction().commit();
+				isGroupsStored = true;
+			}
+			finally {
+				if (groupEm.getTransaction().isActive()) {
+					groupEm.getTransaction().rollback();
+				}
+				groupEm.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets a reference to a random group (with no database access).
+	 * 
+	 * @param em a connection to the test database
+	 * @return the group reference.
+	 */
+	@SuppressWarnings("boxing")
+	private static PersonGroup randomGroup(EntityManager em) {
+		return em.getReference(PersonGroup.class,
+			Randomizer.randomInt(1, GROUP_COUNT));
+	}
+}